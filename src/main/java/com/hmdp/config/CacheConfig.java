@@ -0,0 +1,41 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.BinaryCacheCodec;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.CompressingCacheCodec;
+import com.hmdp.utils.JsonCacheCodec;
+import com.hmdp.utils.MigratingCacheCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * ClassName: CacheConfig
+ * Package: com.hmdp.config
+ * Description: CacheClient的编解码配置
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 17:40
+ * @Version 1.0
+ */
+@Configuration
+public class CacheConfig {
+
+    /**
+     * hmdp.cache.codec：写入格式，json（默认）或 binary
+     * hmdp.cache.codec-migration：切换格式期间开启，读取时同时兼容json和binary
+     * hmdp.cache.compression.threshold：编码后不小于该字节数的值压缩保存，0表示不压缩，已压缩的值始终可以读取
+     */
+    @Bean
+    public CacheCodec cacheCodec(@Value("${hmdp.cache.codec:json}") String format,
+                                 @Value("${hmdp.cache.codec-migration:false}") boolean migration,
+                                 @Value("${hmdp.cache.compression.threshold:0}") int compressionThreshold,
+                                 @Value("${hmdp.cache.compression.level:1}") int compressionLevel) {
+        boolean binary = "binary".equalsIgnoreCase(format);
+        CacheCodec codec = binary ? new BinaryCacheCodec() : new JsonCacheCodec();
+        if (migration) {
+            codec = new MigratingCacheCodec(codec, binary ? new JsonCacheCodec() : new BinaryCacheCodec());
+        }
+        return new CompressingCacheCodec(codec, compressionThreshold, compressionLevel);
+    }
+}
@@ -1,6 +1,8 @@
 package com.hmdp.config;
 
+import com.hmdp.utils.AdminInterceptor;
 import com.hmdp.utils.LoginInterceptor;
+import com.hmdp.utils.RateLimitInterceptor;
 import com.hmdp.utils.RefreshLoginToken;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
@@ -24,6 +26,16 @@ public class MvcConfig implements WebMvcConfigurer {
 
     @Autowired
     RefreshLoginToken refreshLoginToken;
+
+    @Autowired
+    AdminInterceptor adminInterceptor;
+
+    @Autowired
+    RateLimitInterceptor rateLimitInterceptor;
+
+    @Autowired
+    RateLimitProperties rateLimitProperties;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // 登录拦截器
@@ -37,6 +49,19 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/user/code",
                         "/user/login"
                 ).order(1);
-        registry.addInterceptor(refreshLoginToken).addPathPatterns("/**");
+        registry.addInterceptor(refreshLoginToken).addPathPatterns("/**").order(0);
+        // 管理接口：补充秒杀库存、查询对账结果、重新预热缓存，只允许管理员访问
+        registry.addInterceptor(adminInterceptor)
+                .addPathPatterns(
+                        "/voucher/seckill/*/stock",
+                        "/voucher/seckill/reconcile",
+                        "/cache/warm-up"
+                ).order(1);
+        // 限流拦截器，在登录拦截器之后，可以按用户限流；被拒绝时前面的拦截器仍会清理UserHolder
+        String[] limitedPaths = rateLimitProperties.getRules().stream()
+                .map(RateLimitProperties.Rule::getPath).distinct().toArray(String[]::new);
+        if (limitedPaths.length > 0) {
+            registry.addInterceptor(rateLimitInterceptor).addPathPatterns(limitedPaths).order(2);
+        }
     }
 }
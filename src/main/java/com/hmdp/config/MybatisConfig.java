@@ -3,6 +3,9 @@ package com.hmdp.config;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.utils.RebuildQueryTimeoutInterceptor;
+import com.hmdp.utils.SqlMetricsInterceptor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -14,4 +17,16 @@ public class MybatisConfig {
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
         return interceptor;
     }
+
+    // 记录每个mapper方法的SQL耗时
+    @Bean
+    public SqlMetricsInterceptor sqlMetricsInterceptor(CacheMetrics cacheMetrics) {
+        return new SqlMetricsInterceptor(cacheMetrics);
+    }
+
+    // 缓存重建线程上的SQL带上重建剩余时间作为查询超时
+    @Bean
+    public RebuildQueryTimeoutInterceptor rebuildQueryTimeoutInterceptor() {
+        return new RebuildQueryTimeoutInterceptor();
+    }
 }
@@ -0,0 +1,90 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClassName: RateLimitProperties
+ * Package: com.hmdp.config
+ * Description: 限流规则配置，前缀hmdp.rate-limit。每条规则匹配一组路径，按一个维度分别限流
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 04:00
+ * @Version 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 本地令牌桶的最大数量，超出时淘汰最近最少使用的
+     */
+    private int localCapacity = 100000;
+
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+
+        /**
+         * 路径，Ant风格，如 /voucher-order/seckill/*
+         */
+        private String path;
+
+        /**
+         * 限流维度
+         */
+        private Dimension dimension = Dimension.ROUTE;
+
+        /**
+         * 维度为VOUCHER时取该路径变量的值
+         */
+        private String variable = "id";
+
+        /**
+         * 本节点的令牌桶容量，即允许的突发请求数
+         */
+        private int capacity;
+
+        /**
+         * 本节点每秒生成的令牌数
+         */
+        private double rate;
+
+        /**
+         * 所有节点共享的Redis令牌桶容量
+         */
+        private int redisCapacity;
+
+        /**
+         * 所有节点共享的Redis令牌桶每秒生成的令牌数，大于0时才检查Redis令牌桶
+         */
+        private double redisRate;
+    }
+
+    public enum Dimension {
+        /**
+         * 整条路径共用一个令牌桶
+         */
+        ROUTE,
+        /**
+         * 每张优惠券一个令牌桶
+         */
+        VOUCHER,
+        /**
+         * 每个登录用户一个令牌桶，未登录时按IP
+         */
+        USER,
+        /**
+         * 每个IP一个令牌桶
+         */
+        IP
+    }
+}
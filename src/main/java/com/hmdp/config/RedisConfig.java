@@ -0,0 +1,69 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.BloomFilterRegistry;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.RedisLock;
+import com.hmdp.utils.ShopGridIndex;
+import com.hmdp.utils.ShopNameIndex;
+import com.hmdp.utils.SoldOutFlags;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.hmdp.utils.RedisConstants.BLOOM_ADD_CHANNEL;
+import static com.hmdp.utils.RedisConstants.CACHE_INVALIDATE_CHANNEL;
+import static com.hmdp.utils.RedisConstants.LOCK_RELEASE_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SHOP_GEO_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SHOP_NAME_CHANNEL;
+
+/**
+ * ClassName: RedisConfig
+ * Package: com.hmdp.config
+ * Description: Redis发布订阅配置，接收其他节点的缓存失效、布隆过滤器新增、锁释放、秒杀券售罄、商铺坐标和名称变更广播
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 14:30
+ * @Version 1.0
+ */
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            RedisConnectionFactory connectionFactory, CacheClient cacheClient, BloomFilterRegistry bloomFilterRegistry,
+            RedisLock redisLock, SoldOutFlags soldOutFlags, ShopGridIndex shopGridIndex,
+            ShopNameIndex shopNameIndex) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 收到失效消息 --> 淘汰本节点的一级缓存
+        container.addMessageListener(
+                (message, pattern) -> cacheClient.evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
+        // 收到其他节点新增的id --> 写入本节点的布隆过滤器
+        container.addMessageListener(
+                (message, pattern) -> bloomFilterRegistry.onRemoteAdd(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(BLOOM_ADD_CHANNEL));
+        // 锁被释放 --> 唤醒本节点等待该锁的线程
+        container.addMessageListener(
+                (message, pattern) -> redisLock.onReleased(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(LOCK_RELEASE_CHANNEL));
+        // 秒杀券售罄或补充库存 --> 更新本节点的售罄标记
+        container.addMessageListener(
+                (message, pattern) -> soldOutFlags.onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(SECKILL_SOLD_OUT_CHANNEL));
+        // 商铺新增或修改了坐标、类型 --> 更新本节点的网格索引
+        container.addMessageListener(
+                (message, pattern) -> shopGridIndex.onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(SHOP_GEO_CHANNEL));
+        // 商铺新增或修改了名称、商圈 --> 更新本节点的名称索引
+        container.addMessageListener(
+                (message, pattern) -> shopNameIndex.onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(SHOP_NAME_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,100 @@
+package com.hmdp.controller;
+
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.BloomFilterRegistry;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidationOutbox;
+import com.hmdp.utils.CacheWarmer;
+import com.hmdp.utils.HotKeyDetector;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * <p>
+ * 缓存运维控制器
+ * </p>
+ *
+ * @author 梁允勇
+ * @since 2026-10-18
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private BloomFilterRegistry bloomFilterRegistry;
+
+    @Resource
+    private CacheWarmer cacheWarmer;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+
+    /**
+     * 查询各级缓存的命中率
+     * @return 命中统计
+     */
+    @GetMapping("/stats")
+    public Result stats() {
+        return Result.ok(cacheClient.stats());
+    }
+
+    /**
+     * 查询布隆过滤器的误判率
+     * @return 各过滤器的理论误判率、实际误判率和拦截次数
+     */
+    @GetMapping("/bloom")
+    public Result bloomStats() {
+        return Result.ok(bloomFilterRegistry.stats());
+    }
+
+    /**
+     * 查询当前的热点key
+     * @return 热点key及访问频率估计值，按热度降序
+     */
+    @GetMapping("/hot-keys")
+    public Result hotKeys() {
+        return Result.ok(hotKeyDetector.hotKeys());
+    }
+
+    /**
+     * 查询缓存失效发件箱的积压情况
+     * @return 待处理记录数、已删除key数和删除失败次数
+     */
+    @GetMapping("/outbox")
+    public Result outboxStats() {
+        return Result.ok(cacheInvalidationOutbox.stats());
+    }
+
+    /**
+     * 查询商铺缓存预热进度
+     * @return 已读取、已写入、失败数量和耗时
+     */
+    @GetMapping("/warm-up")
+    public Result warmUpProgress() {
+        return Result.ok(cacheWarmer.progress());
+    }
+
+    /**
+     * 重新预热商铺缓存，在后台执行
+     * @return 当前进度
+     */
+    @PostMapping("/warm-up")
+    public Result warmUp() {
+        if (!cacheWarmer.warmUpAsync()) {
+            return Result.fail("预热正在进行中");
+        }
+        return Result.ok(cacheWarmer.progress());
+    }
+}
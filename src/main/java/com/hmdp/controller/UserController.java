@@ -7,6 +7,7 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.UserInfo;
 import com.hmdp.service.IUserInfoService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.BloomFilterRegistry;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -33,6 +34,9 @@ public class UserController {
     @Resource
     private IUserInfoService userInfoService;
 
+    @Resource
+    private BloomFilterRegistry bloomFilterRegistry;
+
     /**
      * 发送手机验证码
      */
@@ -71,6 +75,10 @@ public class UserController {
 
     @GetMapping("/info/{id}")
     public Result info(@PathVariable("id") Long userId){
+        // 用户一定不存在，不查数据库
+        if (!bloomFilterRegistry.mightContain(BloomFilterRegistry.USER, userId)) {
+            return Result.ok();
+        }
         // 查询详情
         UserInfo info = userInfoService.getById(userId);
         if (info == null) {
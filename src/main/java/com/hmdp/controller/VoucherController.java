@@ -4,6 +4,7 @@ package com.hmdp.controller;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.SeckillStockSync;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
@@ -23,6 +24,9 @@ public class VoucherController {
     @Resource
     private IVoucherService voucherService;
 
+    @Resource
+    private SeckillStockSync seckillStockSync;
+
     /**
      * 新增普通券
      * @param voucher 优惠券信息
@@ -45,6 +49,26 @@ public class VoucherController {
         return Result.ok(voucher.getId());
     }
 
+    /**
+     * 补充秒杀券库存
+     * @param voucherId 优惠券id
+     * @param count 补充数量
+     * @return 无
+     */
+    @PostMapping("seckill/{id}/stock")
+    public Result restockSeckillVoucher(@PathVariable("id") Long voucherId, @RequestParam("count") Integer count) {
+        return voucherService.restockSeckillVoucher(voucherId, count);
+    }
+
+    /**
+     * 查询最近一次秒杀库存对账的结果
+     * @return 数据库与Redis库存、购买用户不一致的秒杀券
+     */
+    @GetMapping("seckill/reconcile")
+    public Result reconcileReport() {
+        return Result.ok(seckillStockSync.lastReport());
+    }
+
     /**
      * 查询店铺的优惠券列表
      * @param shopId 店铺id
@@ -0,0 +1,71 @@
+package com.hmdp.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 缓存失效发件箱，与业务数据在同一事务中写入
+ * </p>
+ *
+ * @author 梁允勇
+ * @since 2026-10-18
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("tb_cache_outbox")
+public class CacheOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 待首次删除
+     */
+    public static final int STAGE_FIRST = 1;
+
+    /**
+     * 待延迟二次删除
+     */
+    public static final int STAGE_SECOND = 2;
+
+    /**
+     * 主键
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 需要删除的缓存key
+     */
+    private String cacheKey;
+
+    /**
+     * 1：待首次删除；2：待延迟二次删除
+     */
+    private Integer stage;
+
+    /**
+     * 连续失败次数
+     */
+    private Integer retries;
+
+    /**
+     * 下次处理时间
+     */
+    private LocalDateTime nextTime;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+
+}
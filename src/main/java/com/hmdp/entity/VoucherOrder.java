@@ -26,6 +26,16 @@ public class VoucherOrder implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * 未支付
+     */
+    public static final int STATUS_UNPAID = 1;
+
+    /**
+     * 已取消
+     */
+    public static final int STATUS_CANCELLED = 4;
+
     /**
      * 主键
      */
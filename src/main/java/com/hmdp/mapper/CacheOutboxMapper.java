@@ -0,0 +1,16 @@
+package com.hmdp.mapper;
+
+import com.hmdp.entity.CacheOutbox;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+ * <p>
+ *  Mapper 接口
+ * </p>
+ *
+ * @author 梁允勇
+ * @since 2026-10-18
+ */
+public interface CacheOutboxMapper extends BaseMapper<CacheOutbox> {
+
+}
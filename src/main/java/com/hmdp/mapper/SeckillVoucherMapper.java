@@ -2,6 +2,7 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.SeckillVoucher;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * <p>
@@ -13,4 +14,16 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface SeckillVoucherMapper extends BaseMapper<SeckillVoucher> {
 
+    /**
+     * 扣减库存，库存不足count时不扣减
+     * @return 影响行数，0表示库存不足
+     */
+    int deductStock(@Param("voucherId") Long voucherId, @Param("count") int count);
+
+    /**
+     * 补充库存
+     * @return 影响行数，0表示不是秒杀券
+     */
+    int addStock(@Param("voucherId") Long voucherId, @Param("count") int count);
+
 }
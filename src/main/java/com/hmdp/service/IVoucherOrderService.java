@@ -1,8 +1,11 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -13,4 +16,17 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IVoucherOrderService extends IService<VoucherOrder> {
 
+    Result seckillVoucher(Long voucherId);
+
+    /**
+     * 批量保存已获得秒杀资格的订单：按优惠券分组扣减库存，再一条INSERT写入所有订单；已保存过的订单跳过
+     * @return 因数据库库存不足未保存的订单
+     */
+    List<VoucherOrder> saveOrderBatch(List<VoucherOrder> orders);
+
+    /**
+     * 取消仍未支付的订单，归还数据库库存；已支付或已取消的订单跳过
+     * @return 本次取消的订单
+     */
+    List<VoucherOrder> cancelUnpaidOrders(List<Long> orderIds);
 }
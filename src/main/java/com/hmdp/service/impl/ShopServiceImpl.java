@@ -1,19 +1,35 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
+import com.hmdp.utils.BloomFilterRegistry;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidationOutbox;
+import com.hmdp.utils.ShopGeoIndex;
+import com.hmdp.utils.ShopGridIndex;
+import com.hmdp.utils.ShopNameIndex;
+import com.hmdp.utils.SystemConstants;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -34,6 +50,21 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Autowired
     private CacheClient cacheClient;
 
+    @Autowired
+    private BloomFilterRegistry bloomFilterRegistry;
+
+    @Autowired
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+
+    @Autowired
+    private ShopGeoIndex shopGeoIndex;
+
+    @Autowired
+    private ShopGridIndex shopGridIndex;
+
+    @Autowired
+    private ShopNameIndex shopNameIndex;
+
     @Override
     public Result queryById(Long id) {
         //缓存穿透问题
@@ -159,6 +190,31 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
 //    }
 
 
+    @Override
+    public List<Shop> queryByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 一次MGET + 一次批量查库，按ids的顺序返回，过滤掉已不存在的商铺
+        List<Shop> shops = cacheClient.queryBatchWithLogicalExpire(
+                CACHE_SHOP_KEY, ids, Shop.class, this::getById, this::listByIds, Shop::getId,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        return shops.stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public Result saveShop(Shop shop) {
+        // 写入数据库
+        save(shop);
+        // 登记到布隆过滤器，否则新商铺会被判定为不存在
+        bloomFilterRegistry.put(BloomFilterRegistry.SHOP, shop.getId());
+        // 写入所属类型的GEO集合，附近商铺查询才能查到
+        shopGeoIndex.put(null, shop);
+        shopGridIndex.put(shop);
+        shopNameIndex.put(shop);
+        return Result.ok(shop.getId());
+    }
+
     @Override
     @Transactional
     public Result updateCache(Shop shop) {
@@ -166,12 +222,75 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         if (shopId == null) {
             return Result.fail("店铺Id不能为空！");
         }
+        // 记录修改前的类型，类型变化时要从原类型的GEO集合中删除
+        Shop old = getById(shopId);
+        if (old == null) {
+            return Result.fail("店铺不存在！");
+        }
         updateById(shop);
-        stringRedisTemplate.delete(CACHE_SHOP_KEY + shopId);
+        // 与更新在同一事务中登记失效，提交后由后台批量删除Redis缓存并广播淘汰各节点本地缓存
+        cacheInvalidationOutbox.invalidate(CACHE_SHOP_KEY + shopId);
+        // 提交后按数据库中的最新坐标、类型更新GEO集合，请求中可能只包含部分字段
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                Shop current = getById(shopId);
+                if (current != null) {
+                    shopGeoIndex.put(old.getTypeId(), current);
+                    shopGridIndex.put(current);
+                    shopNameIndex.put(current);
+                }
+            }
+        });
 
         return Result.ok();
     }
 
+    @Override
+    public Result queryShopByType(Integer typeId, Integer current, Double x, Double y) {
+        // 没有坐标，按类型分页查询
+        if (x == null || y == null) {
+            Page<Shop> page = query()
+                    .select("id")
+                    .eq("type_id", typeId)
+                    .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
+            List<Long> ids = page.getRecords().stream().map(Shop::getId).collect(Collectors.toList());
+            return Result.ok(queryByIds(ids));
+        }
+        // 按距离分页，本地网格索引加载完成后直接在内存中计算，否则从Redis GEO快照中取出本页的id和距离
+        int from = (current - 1) * SystemConstants.DEFAULT_PAGE_SIZE;
+        Map<Long, Double> distances = shopGridIndex.isReady()
+                ? shopGridIndex.nearby(typeId.longValue(), x, y, from, SystemConstants.DEFAULT_PAGE_SIZE)
+                : shopGeoIndex.nearby(typeId.longValue(), x, y, from, SystemConstants.DEFAULT_PAGE_SIZE);
+        if (distances.isEmpty()) {
+            return Result.ok(Collections.emptyList());
+        }
+        // 从缓存批量取出商铺详情，缓存中的对象是共享的，复制后再填入距离
+        List<Shop> shops = queryByIds(new ArrayList<>(distances.keySet()));
+        List<Shop> result = new ArrayList<>(shops.size());
+        for (Shop shop : shops) {
+            Shop copy = BeanUtil.copyProperties(shop, Shop.class);
+            copy.setDistance(distances.get(shop.getId()));
+            result.add(copy);
+        }
+        return Result.ok(result);
+    }
+
+    @Override
+    public Result queryShopByName(String name, Integer current) {
+        // 没有关键字或索引还未加载完成，查询数据库
+        if (StrUtil.isBlank(name) || !shopNameIndex.isReady()) {
+            Page<Shop> page = query()
+                    .like(StrUtil.isNotBlank(name), "name", name)
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
+            return Result.ok(page.getRecords());
+        }
+        // 从倒排索引中取出本页的id，再从缓存批量取出商铺详情
+        List<Long> ids = shopNameIndex.search(
+                name, (current - 1) * SystemConstants.MAX_PAGE_SIZE, SystemConstants.MAX_PAGE_SIZE);
+        return Result.ok(queryByIds(ids));
+    }
+
     public Shop queryCacheThrough(Long id) {
         String key = CACHE_SHOP_KEY + id;
         String shopJson = stringRedisTemplate.opsForValue().get(key);
@@ -1,10 +1,33 @@
 package com.hmdp.service.impl;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
+import com.hmdp.mapper.SeckillVoucherMapper;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillKeys;
+import com.hmdp.utils.ShardedStock;
+import com.hmdp.utils.SoldOutFlags;
+import com.hmdp.utils.UserHolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
 
 /**
  * <p>
@@ -17,4 +40,139 @@ import org.springframework.stereotype.Service;
 @Service
 public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, VoucherOrder> implements IVoucherOrderService {
 
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("lua/seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+    }
+
+    private static final int NOT_LOADED = 1;
+    private static final int SOLD_OUT = 4;
+
+    // 下单资格判断结果，下标与seckill.lua的返回值对应
+    private static final String[] FAIL_MESSAGES = {
+            null, "优惠券不存在或不是秒杀券！", "秒杀尚未开始！", "秒杀已经结束！", "库存不足！", "不能重复下单！"
+    };
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private SeckillVoucherMapper seckillVoucherMapper;
+
+    @Resource
+    private RedisIdWorker redisIdWorker;
+
+    @Resource
+    private SoldOutFlags soldOutFlags;
+
+    @Resource
+    private ShardedStock shardedStock;
+
+    @Override
+    public Result seckillVoucher(Long voucherId) {
+        // 0.本地已标记售罄，直接拒绝，不访问Redis
+        if (soldOutFlags.isSoldOut(voucherId)) {
+            return Result.fail(FAIL_MESSAGES[SOLD_OUT]);
+        }
+        Long userId = UserHolder.getUser().getId();
+        long orderId = redisIdWorker.nextId("order");
+        // 1.执行Lua脚本：判断资格、扣减Redis库存，有资格时订单写入消息流；分片库存在用户路由到的分片内完成
+        int shards = shardedStock.cachedShardCount(voucherId);
+        int code = execute(voucherId, userId, orderId, shards);
+        if (code == NOT_LOADED) {
+            // 缓存的分片数可能已过时（秒杀券刚加载或被重新加载），重新查询后再试一次
+            shardedStock.invalidate(voucherId);
+            shards = shardedStock.cachedShardCount(voucherId);
+            code = execute(voucherId, userId, orderId, shards);
+        }
+        // 2.分片库存只是用户所在的分片空了：从其他分片借一个库存到该分片再试，一人一单仍在该分片的脚本内判断；
+        // 借到的库存可能被同一分片的其他用户抢先，最多重试分片数次
+        boolean soldOut = code == SOLD_OUT;
+        if (soldOut && shards > 0) {
+            int shard = SeckillKeys.shardOf(userId, shards);
+            for (int i = 0; i < shards && code == SOLD_OUT; i++) {
+                soldOut = !shardedStock.borrow(voucherId, shards, shard);
+                if (soldOut) {
+                    break;
+                }
+                code = execute(voucherId, userId, orderId, shards);
+            }
+        }
+        // 3.没有资格，所有库存都空了时标记售罄
+        if (code == SOLD_OUT && soldOut) {
+            soldOutFlags.markSoldOut(voucherId);
+        }
+        if (code != 0) {
+            return Result.fail(FAIL_MESSAGES[code]);
+        }
+        // 4.有资格，订单由消息流的消费者写入数据库，直接返回订单id
+        return Result.ok(orderId);
+    }
+
+    private int execute(Long voucherId, Long userId, long orderId, int shards) {
+        String tag = SeckillKeys.tag(voucherId, userId, shards);
+        Long result = stringRedisTemplate.execute(SECKILL_SCRIPT,
+                Arrays.asList(SeckillKeys.stock(tag), SeckillKeys.buyers(tag), SeckillKeys.window(tag), SeckillKeys.stream(tag)),
+                userId.toString(), String.valueOf(System.currentTimeMillis()),
+                String.valueOf(orderId), voucherId.toString());
+        return result == null ? NOT_LOADED : result.intValue();
+    }
+
+    @Override
+    @Transactional
+    public List<VoucherOrder> saveOrderBatch(List<VoucherOrder> orders) {
+        if (orders.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 1.去掉批次内重复的订单，以及提交后未来得及确认、被重复投递的订单
+        Map<Long, VoucherOrder> unique = new LinkedHashMap<>();
+        orders.forEach(order -> unique.putIfAbsent(order.getId(), order));
+        Set<Long> saved = listByIds(unique.keySet()).stream().map(VoucherOrder::getId).collect(Collectors.toSet());
+        saved.forEach(unique::remove);
+        // 2.按优惠券分组，每个优惠券一条UPDATE扣减库存；按id顺序加行锁，避免多个消费者之间死锁
+        Map<Long, List<VoucherOrder>> byVoucher = new TreeMap<>();
+        unique.values().forEach(order -> byVoucher.computeIfAbsent(order.getVoucherId(), k -> new ArrayList<>()).add(order));
+        List<VoucherOrder> accepted = new ArrayList<>(unique.size());
+        List<VoucherOrder> rejected = new ArrayList<>();
+        byVoucher.forEach((voucherId, group) -> {
+            if (seckillVoucherMapper.deductStock(voucherId, group.size()) > 0) {
+                accepted.addAll(group);
+                return;
+            }
+            // 库存不够整组扣减：逐个扣减，扣不到的订单作废
+            for (VoucherOrder order : group) {
+                (seckillVoucherMapper.deductStock(voucherId, 1) > 0 ? accepted : rejected).add(order);
+            }
+        });
+        // 3.一条INSERT写入所有订单
+        if (!accepted.isEmpty()) {
+            getBaseMapper().insertBatch(accepted);
+        }
+        return rejected;
+    }
+
+    @Override
+    @Transactional
+    public List<VoucherOrder> cancelUnpaidOrders(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 1.按状态条件更新，与支付并发时只有一方成功
+        List<VoucherOrder> cancelled = new ArrayList<>();
+        for (VoucherOrder order : listByIds(orderIds)) {
+            boolean updated = update().set("status", VoucherOrder.STATUS_CANCELLED)
+                    .eq("id", order.getId()).eq("status", VoucherOrder.STATUS_UNPAID)
+                    .update();
+            if (updated) {
+                cancelled.add(order);
+            }
+        }
+        // 2.按优惠券归还库存
+        Map<Long, Integer> counts = new TreeMap<>();
+        cancelled.forEach(order -> counts.merge(order.getVoucherId(), 1, Integer::sum));
+        counts.forEach((voucherId, count) -> seckillVoucherMapper.addStock(voucherId, count));
+        return cancelled;
+    }
 }
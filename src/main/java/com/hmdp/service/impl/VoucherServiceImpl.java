@@ -3,14 +3,20 @@ package com.hmdp.service.impl;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
+import com.hmdp.mapper.SeckillVoucherMapper;
 import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.SeckillStockSync;
+import com.hmdp.utils.SoldOutFlags;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -27,6 +33,15 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private ISeckillVoucherService seckillVoucherService;
 
+    @Resource
+    private SeckillVoucherMapper seckillVoucherMapper;
+
+    @Resource
+    private SoldOutFlags soldOutFlags;
+
+    @Resource
+    private SeckillStockSync seckillStockSync;
+
     @Override
     public Result queryVoucherOfShop(Long shopId) {
         // 查询优惠券信息
@@ -47,5 +62,34 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
+        // 事务提交后把库存和秒杀时间写入Redis，清除售罄标记
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                seckillStockSync.load(seckillVoucher, Collections.emptyList());
+                soldOutFlags.clear(seckillVoucher.getVoucherId());
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public Result restockSeckillVoucher(Long voucherId, Integer count) {
+        if (count == null || count <= 0) {
+            return Result.fail("补充数量必须大于0！");
+        }
+        // 1.增加数据库库存
+        if (seckillVoucherMapper.addStock(voucherId, count) == 0) {
+            return Result.fail("秒杀券不存在！");
+        }
+        // 2.事务提交后增加Redis库存，清除各节点的售罄标记；还没有加载到Redis的秒杀券只改数据库，加载时读取最新库存
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                seckillStockSync.addStock(voucherId, count);
+                soldOutFlags.clear(voucherId);
+            }
+        });
+        return Result.ok();
     }
 }
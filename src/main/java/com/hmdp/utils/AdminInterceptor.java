@@ -0,0 +1,52 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ClassName: AdminInterceptor
+ * Package: com.hmdp.utils
+ * Description: 管理接口的拦截器，只允许配置的管理员用户访问。未登录返回401，不是管理员返回403；
+ * 没有配置管理员时所有请求都被拒绝
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 09:30
+ * @Version 1.0
+ */
+@Component
+public class AdminInterceptor implements HandlerInterceptor {
+
+    private final Set<Long> adminIds;
+
+    public AdminInterceptor(@Value("${hmdp.admin.user-ids:}") List<Long> adminIds) {
+        this.adminIds = new HashSet<>(adminIds);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        UserDTO user = UserHolder.getUser();
+        if (user == null) {
+            response.setStatus(401);
+            return false;
+        }
+        if (!adminIds.contains(user.getId())) {
+            response.setStatus(403);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        // 管理接口不经过登录拦截器，在这里移除用户
+        UserHolder.removeUser();
+    }
+}
@@ -0,0 +1,380 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.User;
+import com.hmdp.entity.Voucher;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ClassName: BinaryCacheCodec
+ * Package: com.hmdp.utils
+ * Description: Shop、User、Voucher的紧凑二进制编码，按字段顺序手写读写，不走反射
+ * 格式：[魔数][类型][标志位][逻辑过期时间，8字节epoch毫秒，可选][字段...]
+ * 值为null时类型为0、没有字段（如逻辑过期缓存记录数据库中不存在的数据），任何类型都按二进制读出null；
+ * 其他类型仍使用JSON
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 17:05
+ * @Version 1.0
+ */
+public class BinaryCacheCodec implements CacheCodec {
+
+    static final byte MAGIC = (byte) 0xB1;
+    private static final byte FLAG_EXPIRE = 1;
+    // 值为null时的类型
+    private static final byte TAG_NULL = 0;
+
+    private final Map<Class<?>, Schema<?>> schemasByType = new HashMap<>();
+    private final Schema<?>[] schemasByTag = new Schema<?>[4];
+    private final JsonCacheCodec json = new JsonCacheCodec();
+
+    public BinaryCacheCodec() {
+        register(1, Shop.class, new ShopSchema());
+        register(2, User.class, new UserSchema());
+        register(3, Voucher.class, new VoucherSchema());
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Schema<Object> schema = schemaOf(value);
+        return schema == null && value != null ? json.encode(value) : write(schema, value, false, 0L);
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        if (!schemasByType.containsKey(type) && !supports(bytes)) {
+            return json.decode(bytes, type);
+        }
+        Input in = header(bytes);
+        return type.cast(in.read());
+    }
+
+    @Override
+    public byte[] encodeWithExpire(Object value, long expireMillis) {
+        Schema<Object> schema = schemaOf(value);
+        return schema == null && value != null ? json.encodeWithExpire(value, expireMillis) : write(schema, value, true, expireMillis);
+    }
+
+    @Override
+    public <R> LogicalValue<R> decodeWithExpire(byte[] bytes, Class<R> type) {
+        if (!schemasByType.containsKey(type) && !supports(bytes)) {
+            return json.decodeWithExpire(bytes, type);
+        }
+        Input in = header(bytes);
+        return new LogicalValue<>(type.cast(in.read()), in.expireMillis);
+    }
+
+    @Override
+    public boolean supports(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == MAGIC;
+    }
+
+    private void register(int tag, Class<?> type, Schema<?> schema) {
+        schema.tag = (byte) tag;
+        schemasByType.put(type, schema);
+        schemasByTag[tag] = schema;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Schema<Object> schemaOf(Object value) {
+        return value == null ? null : (Schema<Object>) schemasByType.get(value.getClass());
+    }
+
+    // schema为null时写入null值，只有头部
+    private static byte[] write(Schema<Object> schema, Object value, boolean withExpire, long expireMillis) {
+        Output out = new Output();
+        out.writeByte(MAGIC);
+        out.writeByte(schema == null ? TAG_NULL : schema.tag);
+        out.writeByte(withExpire ? FLAG_EXPIRE : 0);
+        if (withExpire) {
+            out.writeFixedLong(expireMillis);
+        }
+        if (schema != null) {
+            schema.write(value, out);
+        }
+        return out.toByteArray();
+    }
+
+    private Input header(byte[] bytes) {
+        if (!supports(bytes)) {
+            throw new IllegalStateException("缓存数据不是二进制格式，请开启hmdp.cache.codec-migration");
+        }
+        Input in = new Input(bytes, 1);
+        in.schema = schemasByTag[in.readByte()];
+        if ((in.readByte() & FLAG_EXPIRE) != 0) {
+            in.expireMillis = in.readFixedLong();
+        }
+        return in;
+    }
+
+    private abstract static class Schema<T> {
+        byte tag;
+
+        abstract void write(T value, Output out);
+
+        abstract T read(Input in);
+    }
+
+    private static class ShopSchema extends Schema<Shop> {
+        @Override
+        void write(Shop shop, Output out) {
+            out.writeLong(shop.getId());
+            out.writeString(shop.getName());
+            out.writeLong(shop.getTypeId());
+            out.writeString(shop.getImages());
+            out.writeString(shop.getArea());
+            out.writeString(shop.getAddress());
+            out.writeDouble(shop.getX());
+            out.writeDouble(shop.getY());
+            out.writeLong(shop.getAvgPrice());
+            out.writeInt(shop.getSold());
+            out.writeInt(shop.getComments());
+            out.writeInt(shop.getScore());
+            out.writeString(shop.getOpenHours());
+            out.writeTime(shop.getCreateTime());
+            out.writeTime(shop.getUpdateTime());
+            out.writeDouble(shop.getDistance());
+        }
+
+        @Override
+        Shop read(Input in) {
+            return new Shop()
+                    .setId(in.readLong())
+                    .setName(in.readString())
+                    .setTypeId(in.readLong())
+                    .setImages(in.readString())
+                    .setArea(in.readString())
+                    .setAddress(in.readString())
+                    .setX(in.readDouble())
+                    .setY(in.readDouble())
+                    .setAvgPrice(in.readLong())
+                    .setSold(in.readInt())
+                    .setComments(in.readInt())
+                    .setScore(in.readInt())
+                    .setOpenHours(in.readString())
+                    .setCreateTime(in.readTime())
+                    .setUpdateTime(in.readTime())
+                    .setDistance(in.readDouble());
+        }
+    }
+
+    private static class UserSchema extends Schema<User> {
+        @Override
+        void write(User user, Output out) {
+            out.writeLong(user.getId());
+            out.writeString(user.getPhone());
+            out.writeString(user.getPassword());
+            out.writeString(user.getNickName());
+            out.writeString(user.getIcon());
+            out.writeTime(user.getCreateTime());
+            out.writeTime(user.getUpdateTime());
+        }
+
+        @Override
+        User read(Input in) {
+            return new User()
+                    .setId(in.readLong())
+                    .setPhone(in.readString())
+                    .setPassword(in.readString())
+                    .setNickName(in.readString())
+                    .setIcon(in.readString())
+                    .setCreateTime(in.readTime())
+                    .setUpdateTime(in.readTime());
+        }
+    }
+
+    private static class VoucherSchema extends Schema<Voucher> {
+        @Override
+        void write(Voucher voucher, Output out) {
+            out.writeLong(voucher.getId());
+            out.writeLong(voucher.getShopId());
+            out.writeString(voucher.getTitle());
+            out.writeString(voucher.getSubTitle());
+            out.writeString(voucher.getRules());
+            out.writeLong(voucher.getPayValue());
+            out.writeLong(voucher.getActualValue());
+            out.writeInt(voucher.getType());
+            out.writeInt(voucher.getStatus());
+            out.writeInt(voucher.getStock());
+            out.writeTime(voucher.getBeginTime());
+            out.writeTime(voucher.getEndTime());
+            out.writeTime(voucher.getCreateTime());
+            out.writeTime(voucher.getUpdateTime());
+        }
+
+        @Override
+        Voucher read(Input in) {
+            return new Voucher()
+                    .setId(in.readLong())
+                    .setShopId(in.readLong())
+                    .setTitle(in.readString())
+                    .setSubTitle(in.readString())
+                    .setRules(in.readString())
+                    .setPayValue(in.readLong())
+                    .setActualValue(in.readLong())
+                    .setType(in.readInt())
+                    .setStatus(in.readInt())
+                    .setStock(in.readInt())
+                    .setBeginTime(in.readTime())
+                    .setEndTime(in.readTime())
+                    .setCreateTime(in.readTime())
+                    .setUpdateTime(in.readTime());
+        }
+    }
+
+    /**
+     * 可空字段的写入：数字用zigzag变长编码，字符串写(长度+1)再写UTF-8，0表示null
+     */
+    private static class Output {
+        private byte[] buf = new byte[128];
+        private int pos;
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeFixedLong(long v) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (v >>> shift);
+            }
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void writeLong(Long v) {
+            if (v == null) {
+                writeByte(0);
+                return;
+            }
+            writeByte(1);
+            writeVarLong((v << 1) ^ (v >> 63));
+        }
+
+        void writeInt(Integer v) {
+            writeLong(v == null ? null : v.longValue());
+        }
+
+        void writeDouble(Double v) {
+            if (v == null) {
+                writeByte(0);
+                return;
+            }
+            writeByte(1);
+            writeFixedLong(Double.doubleToRawLongBits(v));
+        }
+
+        void writeTime(LocalDateTime v) {
+            writeLong(v == null ? null : v.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+
+        void writeString(String v) {
+            if (v == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+    }
+
+    private static class Input {
+        private final byte[] buf;
+        private int pos;
+        Schema<?> schema;
+        long expireMillis = Long.MAX_VALUE;
+
+        Input(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        // 按头部的类型读出值，null值没有字段
+        Object read() {
+            return schema == null ? null : schema.read(this);
+        }
+
+        byte readByte() {
+            return buf[pos++];
+        }
+
+        long readFixedLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (buf[pos++] & 0xFF);
+            }
+            return v;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+        }
+
+        Long readLong() {
+            if (readByte() == 0) {
+                return null;
+            }
+            long v = readVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        Integer readInt() {
+            Long v = readLong();
+            return v == null ? null : v.intValue();
+        }
+
+        Double readDouble() {
+            return readByte() == 0 ? null : Double.longBitsToDouble(readFixedLong());
+        }
+
+        LocalDateTime readTime() {
+            Long v = readLong();
+            return v == null ? null : LocalDateTime.ofEpochSecond(
+                    Math.floorDiv(v, 1000L), (int) Math.floorMod(v, 1000L) * 1_000_000, ZoneOffset.UTC);
+        }
+
+        String readString() {
+            int len = (int) readVarLong() - 1;
+            if (len < 0) {
+                return null;
+            }
+            String v = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return v;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import cn.hutool.core.util.ByteUtil;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ClassName: BloomFilter
+ * Package: com.hmdp.utils
+ * Description: 记录数据库中已存在id的布隆过滤器，用于在查Redis和数据库之前拦截不存在的id（缓存穿透）
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 15:40
+ * @Version 1.0
+ */
+public abstract class BloomFilter {
+
+    private final String name;
+    // 位数组长度m
+    protected final long numBits;
+    // 哈希函数个数k
+    protected final int numHashes;
+
+    // 初始化完成前一律放行，避免误拦截
+    private volatile boolean ready;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    protected BloomFilter(String name, long expectedInsertions, double fpp) {
+        this.name = name;
+        long n = Math.max(expectedInsertions, 1L);
+        this.numBits = Math.max(64L, (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+    }
+
+    public void put(long id) {
+        setBits(indexes(id));
+    }
+
+    public abstract void putAll(Collection<Long> ids);
+
+    public boolean mightContain(long id) {
+        if (!ready) {
+            return true;
+        }
+        boolean contains = getBits(indexes(id));
+        if (!contains) {
+            rejected.increment();
+        }
+        return contains;
+    }
+
+    // 通过了过滤器但数据库中不存在，记为一次误判
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    public void markReady() {
+        this.ready = true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 理论误判率：随机一个不存在的id，k个位恰好都为1的概率 (X/m)^k，X为已置位数量
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount() / numBits, numHashes);
+    }
+
+    /**
+     * 实际误判率：误判次数 / (误判次数 + 拦截次数)，拦截的一定是不存在的id
+     */
+    public double observedFpp() {
+        long fp = falsePositives.sum();
+        long negatives = fp + rejected.sum();
+        return negatives == 0 ? 0D : (double) fp / negatives;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    protected abstract void setBits(long[] indexes);
+
+    protected abstract boolean getBits(long[] indexes);
+
+    protected abstract long bitCount();
+
+    // 双重哈希：index_i = h1 + i * h2
+    protected long[] indexes(long id) {
+        long[] hash = MurmurHash.hash128(ByteUtil.longToBytes(id));
+        long[] indexes = new long[numHashes];
+        long combined = hash[0];
+        for (int i = 0; i < numHashes; i++) {
+            indexes[i] = (combined & Long.MAX_VALUE) % numBits;
+            combined += hash[1];
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,151 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.mapper.ShopMapper;
+import com.hmdp.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.BLOOM_ADD_CHANNEL;
+import static com.hmdp.utils.RedisConstants.BLOOM_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
+/**
+ * ClassName: BloomFilterRegistry
+ * Package: com.hmdp.utils
+ * Description: 商铺、用户id的布隆过滤器。启动时分批扫描数据库中的id构建，新增数据时同步写入
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 16:20
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class BloomFilterRegistry implements ApplicationRunner {
+
+    public static final String SHOP = "shop";
+    public static final String USER = "user";
+
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ShopMapper shopMapper;
+    private final UserMapper userMapper;
+    // local：每个节点一份堆内位数组，新增id通过发布订阅同步；redis：所有节点共享Redis bitmap
+    private final boolean local;
+
+    private final BloomFilter shopFilter;
+    private final BloomFilter userFilter;
+
+    public BloomFilterRegistry(StringRedisTemplate stringRedisTemplate,
+                               CacheClient cacheClient,
+                               ShopMapper shopMapper,
+                               UserMapper userMapper,
+                               @Value("${hmdp.bloom.mode:local}") String mode,
+                               @Value("${hmdp.bloom.expected-insertions:1000000}") long expectedInsertions,
+                               @Value("${hmdp.bloom.fpp:0.01}") double fpp) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.shopMapper = shopMapper;
+        this.userMapper = userMapper;
+        this.local = !"redis".equalsIgnoreCase(mode);
+        this.shopFilter = create(SHOP, expectedInsertions, fpp);
+        this.userFilter = create(USER, expectedInsertions, fpp);
+        cacheClient.registerBloomFilter(CACHE_SHOP_KEY, shopFilter);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        load(shopFilter, shopMapper);
+        load(userFilter, userMapper);
+    }
+
+    public boolean mightContain(String name, Long id) {
+        return id != null && filter(name).mightContain(id);
+    }
+
+    // 新增数据后调用，本地模式下广播给其他节点
+    public void put(String name, Long id) {
+        if (id == null) {
+            return;
+        }
+        filter(name).put(id);
+        if (local) {
+            stringRedisTemplate.convertAndSend(BLOOM_ADD_CHANNEL, name + ":" + id);
+        }
+    }
+
+    // 收到其他节点的新增广播，格式 name:id
+    public void onRemoteAdd(String message) {
+        int index = message.indexOf(':');
+        if (!local || index < 0) {
+            return;
+        }
+        filter(message.substring(0, index)).put(Long.parseLong(message.substring(index + 1)));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (BloomFilter filter : new BloomFilter[]{shopFilter, userFilter}) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("mode", local ? "local" : "redis");
+            item.put("ready", filter.isReady());
+            item.put("bits", filter.getNumBits());
+            item.put("hashes", filter.getNumHashes());
+            item.put("expectedFpp", filter.expectedFpp());
+            item.put("observedFpp", filter.observedFpp());
+            item.put("rejected", filter.getRejected());
+            item.put("falsePositives", filter.getFalsePositives());
+            stats.put(filter.getName(), item);
+        }
+        return stats;
+    }
+
+    private BloomFilter filter(String name) {
+        return USER.equals(name) ? userFilter : shopFilter;
+    }
+
+    private BloomFilter create(String name, long expectedInsertions, double fpp) {
+        return local
+                ? new LocalBloomFilter(name, expectedInsertions, fpp)
+                : new RedisBloomFilter(name, expectedInsertions, fpp, stringRedisTemplate, BLOOM_KEY + name);
+    }
+
+    // 按主键分段扫描，每次只取一批id，避免一次性加载全表
+    private void load(BloomFilter filter, BaseMapper<?> mapper) {
+        long start = System.currentTimeMillis();
+        long lastId = 0;
+        long total = 0;
+        while (true) {
+            List<Long> ids = selectIds(mapper, lastId);
+            if (ids.isEmpty()) {
+                break;
+            }
+            filter.putAll(ids);
+            total += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        filter.markReady();
+        log.info("布隆过滤器[{}]初始化完成，共{}个id，耗时{}ms", filter.getName(), total, System.currentTimeMillis() - start);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Long> selectIds(BaseMapper mapper, long lastId) {
+        QueryWrapper wrapper = new QueryWrapper<>()
+                .select("id")
+                .gt("id", lastId)
+                .orderByAsc("id")
+                .last("limit " + SCAN_BATCH_SIZE);
+        List<Object> ids = mapper.selectObjs(wrapper);
+        return ids.stream().map(id -> ((Number) id).longValue()).collect(Collectors.toList());
+    }
+}
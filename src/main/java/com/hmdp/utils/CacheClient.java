@@ -1,18 +1,35 @@
 package com.hmdp.utils;
 
-import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
+import static com.hmdp.utils.RedisConstants.CACHE_INVALIDATE_CHANNEL;
 import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
 import static com.hmdp.utils.RedisConstants.LOCK_SHOP_KEY;
 
@@ -30,44 +47,204 @@ public class CacheClient {
 
     private final StringRedisTemplate stringRedisTemplate;
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    // 本地缓存中代表"数据库中不存在"的占位对象
+    private static final Object NULL_VALUE = new Object();
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    // Redis中代表"数据库中不存在"的空值
+    private static final byte[] EMPTY = new byte[0];
+
+    // 重建时带fencing token写入，过期的锁持有者不能覆盖新持有者写入的数据
+    private static final DefaultRedisScript<Long> FENCED_SET_SCRIPT;
+    static {
+        FENCED_SET_SCRIPT = new DefaultRedisScript<>();
+        FENCED_SET_SCRIPT.setLocation(new ClassPathResource("lua/fenced_set.lua"));
+        FENCED_SET_SCRIPT.setResultType(Long.class);
+    }
+
+    // 缓存旁记录的最大token的保留时间，远大于锁的租期
+    private static final long FENCE_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // 值的编解码方式
+    private final CacheCodec codec;
+
+    // 一级缓存（进程内），未开启时为null，所有查询直接走Redis
+    private final LRUCache<String, Object> localCache;
+
+    // 逻辑过期缓存的异步重建
+    private final CacheRebuildScheduler rebuildScheduler;
+
+    // 缓存重建的分布式锁
+    private final RedisLock redisLock;
+
+    // 互斥重建时等待其他节点重建完成的最长时间，超时后直接查数据库
+    private final long lockWaitMillis;
+
+    // 命中率、重建耗时、Redis命令耗时等监控指标
+    private final CacheMetrics metrics;
+
+    // 热点key探测，热点key即使未开启一级缓存也会在本地保存短TTL副本
+    private final HotKeyDetector hotKeyDetector;
+
+    // key前缀 --> 该类数据的布隆过滤器
+    private final Map<String, BloomFilter> bloomFilters = new ConcurrentHashMap<>();
+
+    // 同一个key的并发缓存重建只执行一次
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+
+    // 重建耗时的指数移动平均中新样本的权重
+    private static final double COST_EWMA_ALPHA = 0.2;
+
+    // 带TTL的key写入时，过期时间在 ttl * (1 ± ttlJitter) 内随机，避免同一批写入的key同时过期
+    private final double ttlJitter;
+
+    // 提前刷新（XFetch）：剩余TTL越短、重建越慢，越可能在过期前由某次查询触发异步刷新
+    private final boolean earlyRefreshEnabled;
+    private final double earlyRefreshBeta;
+
+    // key前缀 --> 查询数据库的平均耗时（毫秒）
+    private final Map<String, Double> rebuildCostMillis = new ConcurrentHashMap<>();
+
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate,
+                       CacheCodec codec,
+                       HotKeyDetector hotKeyDetector,
+                       CacheRebuildScheduler rebuildScheduler,
+                       CacheMetrics metrics,
+                       RedisLock redisLock,
+                       @Value("${hmdp.cache.lock-wait-millis:100}") long lockWaitMillis,
+                       @Value("${hmdp.cache.local.enabled:false}") boolean localEnabled,
+                       @Value("${hmdp.cache.local.capacity:1000}") int localCapacity,
+                       @Value("${hmdp.cache.local.ttl-seconds:30}") long localTtlSeconds,
+                       @Value("${hmdp.cache.ttl-jitter:0}") double ttlJitter,
+                       @Value("${hmdp.cache.early-refresh.enabled:false}") boolean earlyRefreshEnabled,
+                       @Value("${hmdp.cache.early-refresh.beta:1.0}") double earlyRefreshBeta) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.codec = codec;
+        this.hotKeyDetector = hotKeyDetector;
+        this.rebuildScheduler = rebuildScheduler;
+        this.metrics = metrics;
+        this.redisLock = redisLock;
+        this.lockWaitMillis = lockWaitMillis;
+        this.localCache = localEnabled
+                ? CacheUtil.newLRUCache(localCapacity, TimeUnit.SECONDS.toMillis(localTtlSeconds))
+                : null;
+        this.ttlJitter = ttlJitter;
+        this.earlyRefreshEnabled = earlyRefreshEnabled;
+        this.earlyRefreshBeta = earlyRefreshBeta;
     }
 
-    // 方法1：将任意Java对象序列化为json并存储在string类型的key中，并且可以设置TTL过期时间
+    // 方法1：将任意Java对象序列化后存储在string类型的key中，并且可以设置TTL过期时间
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        String jsonStr = JSONUtil.toJsonStr(value);
-        stringRedisTemplate.opsForValue().set(key, jsonStr, time, unit);
+        setRaw(key, codec.encode(value), jitter(unit.toMillis(time)));
+        putLocal(key, value);
     }
 
-    // 方法2：将任意Java对象序列化为json并存储在string类型的key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
+    // 方法2：将任意Java对象序列化后存储在string类型的key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
-        RedisData redisData = new RedisData();
-        redisData.setData(value);
-        //将time转换为秒 --> 加上当前时间后
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        // 逻辑过期时间 = 当前时间 + time
+        long expireMillis = System.currentTimeMillis() + unit.toMillis(time);
+        setRaw(key, codec.encodeWithExpire(value, expireMillis), null);
+        putLocal(key, new LogicalValue<>(value, expireMillis));
+    }
+
+    // 批量写入逻辑过期的key，只写入不存在的key（SET NX），一次管道提交，用于缓存预热；返回写入的数量
+    public int setBatchIfAbsentWithLogicalExpire(Map<String, ?> values, Long time, TimeUnit unit) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        long expireMillis = System.currentTimeMillis() + unit.toMillis(time);
+        Map<byte[], byte[]> writes = new LinkedHashMap<>(values.size() * 2);
+        values.forEach((key, value) -> writes.put(rawKey(key), codec.encodeWithExpire(value, expireMillis)));
+        List<Object> results = metrics.redis("pipeline-setnx", () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            writes.forEach((key, value) -> connection.set(key, value, Expiration.persistent(), RedisStringCommands.SetOption.ifAbsent()));
+            return null;
+        }));
+        int written = 0;
+        for (Object result : results) {
+            if (Boolean.TRUE.equals(result)) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    // 删除缓存，并通知所有节点淘汰本地缓存
+    public void delete(String key) {
+        metrics.redis("del", () -> stringRedisTemplate.delete(key));
+        evictLocal(key);
+        stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_CHANNEL, key);
+    }
+
+    // 批量删除缓存：DEL和失效广播在同一个管道中提交
+    public void deleteBatch(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        metrics.redis("pipeline-del", () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.del(keys.toArray(new String[0]));
+            keys.forEach(key -> stringConnection.publish(CACHE_INVALIDATE_CHANNEL, key));
+            return null;
+        }));
+        keys.forEach(this::evictLocal);
+    }
+
+    // 为某个key前缀注册布隆过滤器，查询时先判断id是否可能存在
+    public void registerBloomFilter(String prefixKey, BloomFilter filter) {
+        bloomFilters.put(prefixKey, filter);
     }
 
     // 方法3：根据指定的key查询缓存，并反序列化为指定类型，利用缓存空值的方式解决缓存穿透问题
+    // 开启提前刷新时，命中的key按剩余TTL和重建耗时以一定概率在过期前异步刷新，不加锁
     public <R, ID> R queryWithPassThrough(
             String prefixKey, ID id, Class<R> type, Function<ID, R> dbBack, Long time, TimeUnit unit) {
-        // 从Redis查 --> 命中
         String key = prefixKey + id;
-        String jsonValue = stringRedisTemplate.opsForValue().get(key);
+        // 先查本地缓存
+        Object local = getLocal(key);
+        if (local != null) {
+            metrics.localHit(prefixKey);
+            return local == NULL_VALUE ? null : type.cast(local);
+        }
+        // 布隆过滤器判定不存在 --> 直接返回，不查Redis和数据库
+        BloomFilter filter = bloomFilters.get(prefixKey);
+        if (isFiltered(filter, id)) {
+            return null;
+        }
+        // 从Redis查 --> 命中；提前刷新需要同时取出剩余TTL
+        byte[] value;
+        long ttlMillis = -1;
+        if (earlyRefreshEnabled) {
+            List<Object> entry = getRawWithTtl(key);
+            value = (byte[]) entry.get(0);
+            ttlMillis = entry.get(1) == null ? -1 : (Long) entry.get(1);
+        } else {
+            value = getRaw(key);
+        }
         // 数据存在
-        if (StrUtil.isNotBlank(jsonValue)) {
-            return JSONUtil.toBean(jsonValue, type);
+        if (value != null && value.length > 0) {
+            hit(prefixKey);
+            R data = codec.decode(value, type);
+            putLocal(key, data);
+            if (shouldRefreshEarly(prefixKey, ttlMillis)) {
+                refreshAsync(prefixKey, id, dbBack, time, unit);
+            }
+            return data;
         }
-        // 是空串
-        if (jsonValue != null) {
+        // 是空值
+        if (value != null) {
+            nullHit(prefixKey);
+            putLocal(key, NULL_VALUE);
             return null;
         }
-        R dataValue = dbBack.apply(id);
+        miss(prefixKey);
+        R dataValue = loadTimed(prefixKey, id, dbBack);
         if (dataValue == null) {
-            stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            recordFalsePositive(filter);
+            setNull(key);
             return null;
         }
         set(key, dataValue, time, unit);
@@ -78,98 +255,451 @@ public class CacheClient {
     public <R, ID> R queryWithLogicalExpire(
             String prefixKey, ID id, Class<R> type, Function<ID, R> dbBack, Long time, TimeUnit unit) {
         String key = prefixKey + id;
-        String jsonValue = stringRedisTemplate.opsForValue().get(key);
+        // 本地缓存命中且未逻辑过期 --> 直接返回；已过期则走Redis判断是否需要重建
+        Object local = getLocal(key);
+        if (local instanceof LogicalValue && !((LogicalValue<?>) local).isExpired()) {
+            metrics.localHit(prefixKey);
+            return type.cast(((LogicalValue<?>) local).getData());
+        }
+        if (isFiltered(bloomFilters.get(prefixKey), id)) {
+            return null;
+        }
+        byte[] value = getRaw(key);
         // 未命中--》返回错误
-        if (StrUtil.isBlank(jsonValue)) {
+        if (value == null || value.length == 0) {
+            miss(prefixKey);
             return null;
         }
+        hit(prefixKey);
         // 命中--》检查逻辑过期
-        RedisData redisData = JSONUtil.toBean(jsonValue, RedisData.class);
-        R data = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-        LocalDateTime expireTime = redisData.getExpireTime();
+        LogicalValue<R> logicalValue = codec.decodeWithExpire(value, type);
         // 未过期 --> 返回数据
-        if (expireTime.isAfter(LocalDateTime.now())) {
-            return data;
+        if (!logicalValue.isExpired()) {
+            putLocal(key, logicalValue);
+            return logicalValue.getData();
         }
-        // 已过期 --> 获取锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean flag = tryGetLock(lockKey);
-        //获取锁成功
-        if (flag) {
-            //再次判断是否过期-->未过期
-            if (expireTime.isAfter(LocalDateTime.now())) {
-                return data;
+        // 已过期 --> 获取锁 --> 开启新线程重建，当前线程返回旧数据
+        rebuildAsync(prefixKey, id, dbBack, time, unit);
+        return logicalValue.getData();
+    }
+
+    // 方法5：批量查询逻辑过期的key，过期的返回旧数据并异步重建；缺失的一次查库后以逻辑过期格式写回，数据库中不存在的写回空值
+    public <R, ID> List<R> queryBatchWithLogicalExpire(String prefixKey, List<ID> ids, Class<R> type,
+                                                       Function<ID, R> dbBack,
+                                                       Function<Collection<ID>, List<R>> dbBatch,
+                                                       Function<R, ID> idGetter, Long time, TimeUnit unit) {
+        List<R> result = new ArrayList<>(Collections.nCopies(ids.size(), null));
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Object local = getLocal(prefixKey + ids.get(i));
+            if (local instanceof LogicalValue && !((LogicalValue<?>) local).isExpired()) {
+                metrics.localHit(prefixKey);
+                result.set(i, type.cast(((LogicalValue<?>) local).getData()));
+            } else {
+                pending.add(i);
             }
-            //开启新线程 --》 重建缓存 --》 释放锁
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    R newData = dbBack.apply(id);
-                    setWithLogicalExpire(key, newData, time, unit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    unLock(lockKey);
-                }
-            });
         }
-        return data;
+        if (pending.isEmpty()) {
+            return result;
+        }
+        List<byte[]> values = multiGet(prefixKey, ids, pending);
+        Map<ID, List<Integer>> missing = new LinkedHashMap<>();
+        for (int j = 0; j < pending.size(); j++) {
+            int i = pending.get(j);
+            ID id = ids.get(i);
+            String key = prefixKey + id;
+            byte[] value = values.get(j);
+            if (value == null || value.length == 0) {
+                miss(prefixKey);
+                missing.computeIfAbsent(id, k -> new ArrayList<>()).add(i);
+                continue;
+            }
+            LogicalValue<R> logicalValue = codec.decodeWithExpire(value, type);
+            if (logicalValue.getData() == null) {
+                nullHit(prefixKey);
+            } else {
+                hit(prefixKey);
+            }
+            result.set(i, logicalValue.getData());
+            if (!logicalValue.isExpired()) {
+                putLocal(key, logicalValue);
+            } else {
+                rebuildAsync(prefixKey, id, dbBack, time, unit);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        Map<ID, R> loaded = loadBatch(prefixKey, missing.keySet(), dbBatch, idGetter);
+        // 写回Redis：存在的写数据，不存在的写空值并设置过期时间，有效期内不再查库
+        Map<String, byte[]> writes = new LinkedHashMap<>();
+        Map<String, Long> ttls = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        long expireMillis = now + unit.toMillis(time);
+        long nullTtlMillis = TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL);
+        missing.forEach((id, positions) -> {
+            String key = prefixKey + id;
+            R data = loaded.get(id);
+            if (data == null) {
+                writes.put(key, codec.encodeWithExpire(null, now + nullTtlMillis));
+                ttls.put(key, nullTtlMillis);
+                putLocal(key, new LogicalValue<>(null, now + nullTtlMillis));
+                return;
+            }
+            writes.put(key, codec.encodeWithExpire(data, expireMillis));
+            putLocal(key, new LogicalValue<>(data, expireMillis));
+            positions.forEach(i -> result.set(i, data));
+        });
+        pipelineSet(writes, ttls);
+        return result;
     }
 
     public <R, ID> R queryWithMutex(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         String key = keyPrefix + id;
+        // 0.先查本地缓存
+        Object local = getLocal(key);
+        if (local != null) {
+            metrics.localHit(keyPrefix);
+            return local == NULL_VALUE ? null : type.cast(local);
+        }
+        BloomFilter filter = bloomFilters.get(keyPrefix);
+        if (isFiltered(filter, id)) {
+            return null;
+        }
         // 1.从redis查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
+        byte[] value = getRaw(key);
         // 2.判断是否存在
-        if (StrUtil.isNotBlank(shopJson)) {
+        if (value != null && value.length > 0) {
             // 3.存在，直接返回
-            return JSONUtil.toBean(shopJson, type);
+            hit(keyPrefix);
+            R data = codec.decode(value, type);
+            putLocal(key, data);
+            return data;
         }
         // 判断命中的是否是空值
-        if (shopJson != null) {
+        if (value != null) {
             // 返回一个错误信息
+            nullHit(keyPrefix);
+            putLocal(key, NULL_VALUE);
             return null;
         }
+        miss(keyPrefix);
+
+        // 4.实现缓存重建：同一个key的并发未命中合并为一次加载，其余线程等待结果，不再休眠重试
+        return singleFlight.execute(key, () -> rebuildWithMutex(keyPrefix, id, type, dbFallback, time, unit, filter));
+    }
 
-        // 4.实现缓存重建
-        // 4.1.获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        R r = null;
+    private <R, ID> R rebuildWithMutex(String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback,
+                                       Long time, TimeUnit unit, BloomFilter filter) {
+        String key = keyPrefix + id;
+        // 4.1.获取互斥锁，锁被占用时等待释放通知
+        RedisLock.Lease lease = lock(LOCK_SHOP_KEY + id, lockWaitMillis);
+        // 4.2.等待超时：其他节点仍在重建，直接查数据库返回，不写缓存
+        if (lease == null) {
+            return dbFallback.apply(id);
+        }
         try {
-            boolean isLock = tryGetLock(lockKey);
-            // 4.2.判断是否获取成功
-            if (!isLock) {
-                // 4.3.获取锁失败，休眠并重试
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, type, dbFallback, time, unit);
-            }
-            // 4.4.获取锁成功，根据id查询数据库
-            r = dbFallback.apply(id);
+            // 4.3.获取锁成功，再次检查缓存，可能刚被其他节点重建
+            byte[] value = getRaw(key);
+            if (value != null && value.length > 0) {
+                R data = codec.decode(value, type);
+                putLocal(key, data);
+                return data;
+            }
+            if (value != null) {
+                return null;
+            }
+            // 4.4.根据id查询数据库
+            R r = loadTimed(keyPrefix, id, dbFallback);
+            // 查询期间锁已失效（续期失败），可能有新的持有者写入了更新的数据，不再写缓存
+            if (!lease.isHeld()) {
+                return r;
+            }
             // 5.不存在，返回错误
             if (r == null) {
-                // 将空值写入redis
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+                recordFalsePositive(filter);
+                // 将空值写入redis，锁已被新的持有者获取并写入过时不写
+                if (setFenced(key, EMPTY, TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL), lease)) {
+                    putLocal(key, NULL_VALUE);
+                }
                 // 返回错误信息
                 return null;
             }
             // 6.存在，写入redis
-            set(key, r, time, unit);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            if (setFenced(key, codec.encode(r), jitter(unit.toMillis(time)), lease)) {
+                putLocal(key, r);
+            }
+            // 7.返回
+            return r;
         } finally {
-            // 7.释放锁
-            unLock(lockKey);
+            // 8.释放锁
+            lease.unlock();
         }
-        // 8.返回
-        return r;
     }
 
-    private boolean tryGetLock(String lockKey) {
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, "1", 10L, TimeUnit.MINUTES);
-        return BooleanUtil.isTrue(flag);
+    /**
+     * 淘汰本节点的本地缓存，由缓存失效广播的监听器调用
+     */
+    public void evictLocal(String key) {
+        if (localCache != null) {
+            localCache.remove(key);
+        }
+        hotKeyDetector.evict(key);
     }
 
-    private void unLock(String lockKey) {
-        stringRedisTemplate.delete(lockKey);
+    /**
+     * 各级缓存的命中统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (localCache != null) {
+            long l1Hits = localCache.getHitCount();
+            long l1Misses = localCache.getMissCount();
+            stats.put("l1Size", localCache.size());
+            stats.put("l1Hits", l1Hits);
+            stats.put("l1Misses", l1Misses);
+            stats.put("l1HitRatio", ratio(l1Hits, l1Misses));
+        }
+        stats.put("hotKeyHits", hotKeyDetector.getHits());
+        long hits = redisHits.sum();
+        long misses = redisMisses.sum();
+        stats.put("redisHits", hits);
+        stats.put("redisMisses", misses);
+        stats.put("redisHitRatio", ratio(hits, misses));
+        stats.put("earlyRefreshes", earlyRefreshes.sum());
+        stats.put("rebuildCostMillis", new LinkedHashMap<>(rebuildCostMillis));
+        stats.put("rebuild", rebuildScheduler.stats());
+        return stats;
+    }
+
+    // 获取锁成功 --> 提交重建任务 --> 重建结束后释放锁；本节点已有待执行的重建时不再抢锁
+    private <R, ID> void rebuildAsync(String prefixKey, ID id, Function<ID, R> dbBack, Long time, TimeUnit unit) {
+        String key = prefixKey + id;
+        if (rebuildScheduler.isPending(key)) {
+            return;
+        }
+        RedisLock.Lease lease = lock(LOCK_SHOP_KEY + id, 0);
+        if (lease == null) {
+            return;
+        }
+        // 锁在重建线程中释放
+        boolean accepted = rebuildScheduler.submit(key, () -> loadTimed(prefixKey, id, dbBack), data -> {
+            if (!lease.isHeld()) {
+                return;
+            }
+            long expireMillis = System.currentTimeMillis() + unit.toMillis(time);
+            if (setFenced(key, codec.encodeWithExpire(data, expireMillis), null, lease)) {
+                putLocal(key, new LogicalValue<>(data, expireMillis));
+            }
+        }, lease::unlock);
+        // 队列已满或重复提交：释放锁，本次继续返回旧数据
+        if (!accepted) {
+            lease.unlock();
+        }
+    }
+
+    // XFetch：-delta * beta * ln(rand) >= 剩余TTL 时刷新，delta为该前缀的平均重建耗时
+    private boolean shouldRefreshEarly(String prefixKey, long ttlMillis) {
+        if (!earlyRefreshEnabled || ttlMillis <= 0) {
+            return false;
+        }
+        Double delta = rebuildCostMillis.get(prefixKey);
+        if (delta == null) {
+            return false;
+        }
+        double rand = ThreadLocalRandom.current().nextDouble();
+        return -delta * earlyRefreshBeta * Math.log(rand) >= ttlMillis;
+    }
+
+    // 提前刷新交给重建调度器执行，同一个key只会有一个刷新任务，当前请求直接返回已有数据
+    private <R, ID> void refreshAsync(String prefixKey, ID id, Function<ID, R> dbBack, Long time, TimeUnit unit) {
+        String key = prefixKey + id;
+        boolean accepted = rebuildScheduler.submit(key, () -> loadTimed(prefixKey, id, dbBack), data -> {
+            if (data == null) {
+                setNull(key);
+            } else {
+                set(key, data, time, unit);
+            }
+        }, () -> { });
+        if (accepted) {
+            earlyRefreshes.increment();
+        }
+    }
+
+    // 查询数据库并记录耗时，作为提前刷新的依据
+    private <R, ID> R loadTimed(String prefixKey, ID id, Function<ID, R> dbBack) {
+        long start = System.nanoTime();
+        try {
+            return dbBack.apply(id);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            metrics.recordRebuild(prefixKey, nanos);
+            double cost = nanos / 1_000_000D;
+            rebuildCostMillis.merge(prefixKey, cost, (old, sample) -> old + COST_EWMA_ALPHA * (sample - old));
+        }
+    }
+
+    private long jitter(long ttlMillis) {
+        if (ttlJitter <= 0) {
+            return ttlMillis;
+        }
+        double factor = 1 + ttlJitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(1L, (long) (ttlMillis * factor));
+    }
+
+    // GET和PTTL一次管道提交，返回[值, 剩余毫秒数]
+    private List<Object> getRawWithTtl(String key) {
+        byte[] rawKey = rawKey(key);
+        return metrics.redis("get+pttl", () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.get(rawKey);
+            connection.pTtl(rawKey);
+            return null;
+        }, RedisSerializer.byteArray()));
+    }
+
+    // 值以字节读写，二进制编码的值不经过字符串转换
+    private byte[] getRaw(String key) {
+        return metrics.redis("get", () -> stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey(key))));
+    }
+
+    // ttlMillis为null时不设置过期时间
+    private void setRaw(String key, byte[] value, Long ttlMillis) {
+        metrics.redis(ttlMillis == null ? "set" : "psetex", () -> stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            if (ttlMillis == null) {
+                connection.set(rawKey(key), value);
+            } else {
+                connection.pSetEx(rawKey(key), ttlMillis, value);
+            }
+            return null;
+        }));
+    }
+
+    // 带锁的fencing token写入，已写入过更大的token时拒绝；ttlMillis为null时不设置过期时间
+    private boolean setFenced(String key, byte[] value, Long ttlMillis, RedisLock.Lease lease) {
+        Long result = metrics.redis("evalsha", () -> stringRedisTemplate.execute(FENCED_SET_SCRIPT,
+                RedisSerializer.byteArray(), new GenericToStringSerializer<>(Long.class),
+                Arrays.asList(key, RedisLock.fenceKey(key)),
+                bytes(lease.getFencingToken()), value, bytes(ttlMillis == null ? 0 : ttlMillis), bytes(FENCE_TTL_MILLIS)));
+        return result != null && result == 1;
+    }
+
+    private static byte[] bytes(long value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void setNull(String key) {
+        setRaw(key, EMPTY, TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL));
+        putLocal(key, NULL_VALUE);
+    }
+
+    // MGET取出ids中指定位置的key，返回值与positions一一对应
+    private <ID> List<byte[]> multiGet(String prefixKey, List<ID> ids, List<Integer> positions) {
+        byte[][] keys = new byte[positions.size()][];
+        for (int j = 0; j < keys.length; j++) {
+            keys[j] = rawKey(prefixKey + ids.get(positions.get(j)));
+        }
+        List<byte[]> values = metrics.redis("mget", () -> stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(keys)));
+        return values == null ? Collections.nCopies(keys.length, null) : values;
+    }
+
+    private <R, ID> Map<ID, R> loadBatch(String prefixKey, Collection<ID> ids,
+                                         Function<Collection<ID>, List<R>> dbBatch, Function<R, ID> idGetter) {
+        Map<ID, R> loaded = new HashMap<>(ids.size() * 2);
+        long start = System.nanoTime();
+        List<R> list = dbBatch.apply(ids);
+        metrics.recordRebuild(prefixKey, System.nanoTime() - start);
+        if (list != null) {
+            for (R data : list) {
+                loaded.put(idGetter.apply(data), data);
+            }
+        }
+        return loaded;
+    }
+
+    // 管道批量写入，ttls中没有的key不设置过期时间
+    private void pipelineSet(Map<String, byte[]> values, Map<String, Long> ttlMillis) {
+        if (values.isEmpty()) {
+            return;
+        }
+        metrics.redis("pipeline-set", () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> {
+                Long ttl = ttlMillis.get(key);
+                if (ttl == null) {
+                    connection.set(rawKey(key), value);
+                } else {
+                    connection.pSetEx(rawKey(key), ttl, value);
+                }
+            });
+            return null;
+        }));
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isFiltered(BloomFilter filter, Object id) {
+        return filter != null && id instanceof Number && !filter.mightContain(((Number) id).longValue());
+    }
+
+    private static void recordFalsePositive(BloomFilter filter) {
+        if (filter != null && filter.isReady()) {
+            filter.recordFalsePositive();
+        }
+    }
+
+    // 每次查询先记录访问频率，再依次查一级缓存和热点key副本
+    private Object getLocal(String key) {
+        hotKeyDetector.record(key);
+        Object value = localCache == null ? null : localCache.get(key, false);
+        return value != null ? value : hotKeyDetector.get(key);
+    }
+
+    private void putLocal(String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (localCache != null) {
+            localCache.put(key, value);
+        }
+        hotKeyDetector.put(key, value);
+    }
+
+    private void hit(String prefix) {
+        redisHits.increment();
+        metrics.hit(prefix);
+    }
+
+    private void nullHit(String prefix) {
+        redisHits.increment();
+        metrics.nullHit(prefix);
+    }
+
+    private void miss(String prefix) {
+        redisMisses.increment();
+        metrics.miss(prefix);
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0D : (double) hits / total;
+    }
+
+    // waitMillis为0时只尝试一次；获取失败返回null
+    private RedisLock.Lease lock(String lockKey, long waitMillis) {
+        RedisLock.Lease lease;
+        try {
+            lease = waitMillis <= 0
+                    ? redisLock.tryLock(lockKey)
+                    : redisLock.tryLock(lockKey, waitMillis, TimeUnit.MILLISECONDS, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lease = null;
+        }
+        if (lease == null) {
+            metrics.lockFailure(LOCK_SHOP_KEY);
+        }
+        return lease;
     }
 }
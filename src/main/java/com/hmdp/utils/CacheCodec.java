@@ -0,0 +1,30 @@
+package com.hmdp.utils;
+
+/**
+ * ClassName: CacheCodec
+ * Package: com.hmdp.utils
+ * Description: CacheClient写入Redis的值的编解码方式，默认JSON，可切换为紧凑的二进制格式
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 16:50
+ * @Version 1.0
+ */
+public interface CacheCodec {
+
+    byte[] encode(Object value);
+
+    <R> R decode(byte[] bytes, Class<R> type);
+
+    /**
+     * 编码带逻辑过期时间的值
+     * @param expireMillis 逻辑过期时间，epoch毫秒
+     */
+    byte[] encodeWithExpire(Object value, long expireMillis);
+
+    <R> LogicalValue<R> decodeWithExpire(byte[] bytes, Class<R> type);
+
+    /**
+     * 判断bytes是否是本编解码器写入的格式，迁移模式下据此选择解码器
+     */
+    boolean supports(byte[] bytes);
+}
@@ -0,0 +1,186 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.hmdp.entity.CacheOutbox;
+import com.hmdp.mapper.CacheOutboxMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * ClassName: CacheInvalidationOutbox
+ * Package: com.hmdp.utils
+ * Description: 可靠的缓存失效。业务事务中只写发件箱，提交后由后台线程批量删除缓存；
+ * 首次删除成功后延迟再删一次，清掉提交前被并发读请求回填的旧值；删除失败按指数退避重试
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 20:40
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class CacheInvalidationOutbox {
+
+    private final CacheOutboxMapper outboxMapper;
+    private final CacheClient cacheClient;
+
+    private final int batchSize;
+    private final long secondDeleteMillis;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+
+    // 单线程执行投递，事务提交后的触发与定时扫描不会并发处理同一批记录
+    private final ExecutorService relayExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(1), new NamedThreadFactory("cache-outbox-", true),
+            new ThreadPoolExecutor.DiscardPolicy());
+    // 已有待执行的投递时不再重复提交
+    private final AtomicBoolean relayScheduled = new AtomicBoolean();
+
+    private final LongAdder deleted = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public CacheInvalidationOutbox(CacheOutboxMapper outboxMapper, CacheClient cacheClient,
+                                   @Value("${hmdp.cache.outbox.batch-size:200}") int batchSize,
+                                   @Value("${hmdp.cache.outbox.second-delete-millis:1000}") long secondDeleteMillis,
+                                   @Value("${hmdp.cache.outbox.retry-base-millis:500}") long retryBaseMillis,
+                                   @Value("${hmdp.cache.outbox.retry-max-millis:60000}") long retryMaxMillis) {
+        this.outboxMapper = outboxMapper;
+        this.cacheClient = cacheClient;
+        this.batchSize = batchSize;
+        this.secondDeleteMillis = secondDeleteMillis;
+        this.retryBaseMillis = retryBaseMillis;
+        this.retryMaxMillis = retryMaxMillis;
+    }
+
+    /**
+     * 登记需要失效的缓存key，应在修改数据的事务中调用；事务提交后立即投递，回滚则一起撤销
+     */
+    public void invalidate(String key) {
+        CacheOutbox outbox = new CacheOutbox()
+                .setCacheKey(key)
+                .setStage(CacheOutbox.STAGE_FIRST)
+                .setRetries(0)
+                .setNextTime(LocalDateTime.now());
+        outboxMapper.insert(outbox);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            triggerRelay();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                triggerRelay();
+            }
+        });
+    }
+
+    /**
+     * 定时扫描：处理到期的二次删除、重试，以及提交后触发丢失（如进程重启）的记录
+     */
+    @Scheduled(fixedDelayString = "${hmdp.cache.outbox.poll-millis:1000}")
+    public void poll() {
+        triggerRelay();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", outboxMapper.selectCount(null));
+        stats.put("deleted", deleted.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutor.shutdown();
+    }
+
+    private void triggerRelay() {
+        if (relayScheduled.compareAndSet(false, true)) {
+            relayExecutor.execute(() -> {
+                relayScheduled.set(false);
+                relay();
+            });
+        }
+    }
+
+    // 一次取出一批到期记录处理，取满说明还有积压，继续处理下一批
+    private void relay() {
+        try {
+            List<CacheOutbox> batch;
+            do {
+                batch = outboxMapper.selectList(new QueryWrapper<CacheOutbox>()
+                        .le("next_time", LocalDateTime.now())
+                        .orderByAsc("id")
+                        .last("limit " + batchSize));
+                if (!batch.isEmpty() && !deliver(batch)) {
+                    return;
+                }
+            } while (batch.size() == batchSize);
+        } catch (Exception e) {
+            log.error("缓存失效发件箱扫描失败", e);
+        }
+    }
+
+    private boolean deliver(List<CacheOutbox> batch) {
+        Set<String> keys = batch.stream().map(CacheOutbox::getCacheKey).collect(Collectors.toCollection(LinkedHashSet::new));
+        try {
+            cacheClient.deleteBatch(keys);
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("批量删除缓存失败，{}个key稍后重试", keys.size(), e);
+            batch.forEach(this::scheduleRetry);
+            return false;
+        }
+        deleted.add(keys.size());
+        List<Long> firstStage = new ArrayList<>();
+        List<Long> finished = new ArrayList<>();
+        for (CacheOutbox outbox : batch) {
+            (outbox.getStage() == CacheOutbox.STAGE_FIRST ? firstStage : finished).add(outbox.getId());
+        }
+        // 首次删除完成 --> 等待一段时间后二次删除；二次删除完成 --> 删除记录
+        if (!firstStage.isEmpty()) {
+            outboxMapper.update(null, new UpdateWrapper<CacheOutbox>()
+                    .set("stage", CacheOutbox.STAGE_SECOND)
+                    .set("retries", 0)
+                    .set("next_time", LocalDateTime.now().plus(secondDeleteMillis, ChronoUnit.MILLIS))
+                    .in("id", firstStage));
+        }
+        if (!finished.isEmpty()) {
+            outboxMapper.deleteBatchIds(finished);
+        }
+        return true;
+    }
+
+    // 指数退避：base * 2^retries，不超过max
+    private void scheduleRetry(CacheOutbox outbox) {
+        int retries = outbox.getRetries() + 1;
+        long delay = Math.min(retryMaxMillis, retryBaseMillis << Math.min(retries - 1, 20));
+        outboxMapper.update(null, new UpdateWrapper<CacheOutbox>()
+                .set("retries", retries)
+                .set("next_time", LocalDateTime.now().plus(delay, ChronoUnit.MILLIS))
+                .eq("id", outbox.getId()));
+    }
+}
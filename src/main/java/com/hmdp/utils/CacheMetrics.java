@@ -0,0 +1,142 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * ClassName: CacheMetrics
+ * Package: com.hmdp.utils
+ * Description: 缓存与数据访问的监控指标，通过管理端口的 /actuator/prometheus 暴露。
+ * 计时器发布百分位直方图，由监控系统聚合计算p50/p99；Meter按标签缓存在Map中，记录时不再重复注册
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 20:05
+ * @Version 1.0
+ */
+@Component
+public class CacheMetrics {
+
+    // cache.requests 的 result 标签，下标与 RESULTS 对应
+    private static final int LOCAL = 0;
+    private static final int HIT = 1;
+    private static final int NULL = 2;
+    private static final int MISS = 3;
+    private static final String[] RESULTS = {"local", "hit", "null", "miss"};
+
+    private final MeterRegistry registry;
+
+    // key前缀 --> 各结果的计数器
+    private final Map<String, Counter[]> requests = new ConcurrentHashMap<>();
+    private final Map<String, Counter> lockFailures = new ConcurrentHashMap<>();
+    private final Map<String, Timer> rebuildTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> redisTimers = new ConcurrentHashMap<>();
+    // mapper方法id --> [成功, 失败]
+    private final Map<String, Timer[]> sqlTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> searchTimers = new ConcurrentHashMap<>();
+
+    public CacheMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // 本地缓存（一级缓存或热点key副本）命中
+    public void localHit(String prefix) {
+        requests(prefix)[LOCAL].increment();
+    }
+
+    public void hit(String prefix) {
+        requests(prefix)[HIT].increment();
+    }
+
+    // 命中空值：数据库中不存在
+    public void nullHit(String prefix) {
+        requests(prefix)[NULL].increment();
+    }
+
+    public void miss(String prefix) {
+        requests(prefix)[MISS].increment();
+    }
+
+    public void lockFailure(String lockPrefix) {
+        lockFailures.computeIfAbsent(lockPrefix, p -> Counter.builder("cache.lock.failures")
+                .tag("prefix", p)
+                .register(registry)).increment();
+    }
+
+    // 缓存重建时查询数据库的耗时
+    public void recordRebuild(String prefix, long nanos) {
+        rebuildTimers.computeIfAbsent(prefix, p -> timer("cache.rebuild", Duration.ofMillis(1), Duration.ofSeconds(10))
+                .tag("prefix", p)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // 执行一次Redis调用并记录耗时，command为命令名或管道中的命令组合
+    public <T> T redis(String command, Supplier<T> call) {
+        Timer timer = redisTimers.computeIfAbsent(command, c -> timer("redis.command", Duration.ofNanos(100_000), Duration.ofSeconds(1))
+                .tag("command", c)
+                .register(registry));
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordSql(String statementId, long nanos, boolean success) {
+        Timer[] timers = sqlTimers.computeIfAbsent(statementId, id -> new Timer[]{
+                sqlTimer(id, "success"), sqlTimer(id, "error")});
+        timers[success ? 0 : 1].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // 进程内索引的查询耗时
+    public Timer searchTimer(String index) {
+        return searchTimers.computeIfAbsent(index, i -> timer("search.query", Duration.ofNanos(1000), Duration.ofMillis(100))
+                .tag("index", i)
+                .register(registry));
+    }
+
+    // 进程内索引占用的内存估计
+    public <T> void indexBytes(String index, T target, ToDoubleFunction<T> bytes) {
+        Gauge.builder("search.index.bytes", target, bytes)
+                .tag("index", index)
+                .register(registry);
+    }
+
+    private Counter[] requests(String prefix) {
+        return requests.computeIfAbsent(prefix, p -> {
+            Counter[] counters = new Counter[RESULTS.length];
+            for (int i = 0; i < RESULTS.length; i++) {
+                counters[i] = Counter.builder("cache.requests")
+                        .tag("prefix", p)
+                        .tag("result", RESULTS[i])
+                        .register(registry);
+            }
+            return counters;
+        });
+    }
+
+    private Timer sqlTimer(String statementId, String outcome) {
+        return timer("mybatis.statement", Duration.ofMillis(1), Duration.ofSeconds(10))
+                .tag("statement", statementId)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    // 限定直方图的上下界，减少每个计时器的桶数量
+    private static Timer.Builder timer(String name, Duration min, Duration max) {
+        return Timer.builder(name)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(min)
+                .maximumExpectedValue(max);
+    }
+}
@@ -0,0 +1,202 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * ClassName: CacheRebuildScheduler
+ * Package: com.hmdp.utils
+ * Description: 逻辑过期缓存的异步重建。队列有界，同一个key同时只有一个待执行的重建任务，
+ * 队列满时拒绝并由调用方继续返回旧数据；异常记录日志而不是抛到线程池里丢失。
+ * 单次重建有超时时间：重建线程执行的SQL带上剩余时间作为查询超时（见RebuildQueryTimeoutInterceptor），
+ * 到时中断线程；查询返回后先判断是否已超时，超时的结果直接丢弃，不写缓存
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 19:20
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class CacheRebuildScheduler {
+
+    // 重建线程上本次重建的截止时间（System.nanoTime），不在重建中时为null
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor executor;
+    // 超时后中断执行重建的线程
+    private final ScheduledExecutorService timer;
+    private final long timeoutMillis;
+    private final long shutdownMillis;
+
+    // 已提交、尚未执行完的key
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder totalLatencyMillis = new LongAdder();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    public CacheRebuildScheduler(@Value("${hmdp.cache.rebuild.threads:10}") int threads,
+                                 @Value("${hmdp.cache.rebuild.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${hmdp.cache.rebuild.timeout-millis:3000}") long timeoutMillis,
+                                 @Value("${hmdp.cache.rebuild.shutdown-millis:10000}") long shutdownMillis) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory("cache-rebuild-", false),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("cache-rebuild-timer-", true));
+        this.timeoutMillis = timeoutMillis;
+        this.shutdownMillis = shutdownMillis;
+    }
+
+    /**
+     * 该key是否已有待执行的重建，调用方据此跳过获取分布式锁
+     */
+    public boolean isPending(String key) {
+        return pendingKeys.contains(key);
+    }
+
+    /**
+     * 提交重建任务
+     * @param load 查询数据库
+     * @param write 把查询结果写回缓存，超时后查询才返回的结果不会写入
+     * @param onFinish 无论成功、失败、超时都会执行，用于释放锁；未被接受时不执行
+     * @return 是否被接受，重复或队列已满时返回false，调用方继续返回旧数据
+     */
+    public <T> boolean submit(String key, Supplier<T> load, Consumer<T> write, Runnable onFinish) {
+        if (!pendingKeys.add(key)) {
+            deduplicated.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> run(key, load, write, onFinish));
+            submitted.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingKeys.remove(key);
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * 当前线程正在执行的重建剩余的时间
+     * @return 不在重建中返回-1，已超时返回0
+     */
+    public static long remainingMillis() {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return -1;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long done = succeeded.sum() + failed.sum();
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("pendingKeys", pendingKeys.size());
+        stats.put("submitted", submitted.sum());
+        stats.put("deduplicated", deduplicated.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("succeeded", succeeded.sum());
+        stats.put("failed", failed.sum());
+        stats.put("timedOut", timedOut.sum());
+        stats.put("avgLatencyMillis", done == 0 ? 0 : totalLatencyMillis.sum() / done);
+        stats.put("maxLatencyMillis", maxLatencyMillis.get());
+        return stats;
+    }
+
+    /**
+     * 停止接收新任务，等待队列中的任务执行完，超时后中断
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownMillis, TimeUnit.MILLISECONDS)) {
+            log.warn("缓存重建线程池在{}ms内未结束，剩余{}个任务被丢弃", shutdownMillis, executor.shutdownNow().size());
+        }
+        timer.shutdownNow();
+    }
+
+    private <T> void run(String key, Supplier<T> load, Consumer<T> write, Runnable onFinish) {
+        long start = System.currentTimeMillis();
+        Thread worker = Thread.currentThread();
+        Timeout timeout = new Timeout();
+        DEADLINE.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        ScheduledFuture<?> interrupt = timer.schedule(() -> timeout.fire(worker), timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            T data = load.get();
+            // 写缓存前结束计时：已超时则丢弃结果，未超时则写入期间不会再被中断
+            if (timeout.finish()) {
+                write.accept(data);
+                succeeded.increment();
+            } else {
+                failed.increment();
+                log.warn("缓存重建超时，丢弃查询结果，key={}", key);
+            }
+        } catch (Exception e) {
+            timeout.finish();
+            failed.increment();
+            log.error("缓存重建失败，key={}", key, e);
+        } finally {
+            DEADLINE.remove();
+            interrupt.cancel(false);
+            // 清除可能残留的中断标记，避免影响线程池的下一个任务
+            Thread.interrupted();
+            pendingKeys.remove(key);
+            long latency = System.currentTimeMillis() - start;
+            totalLatencyMillis.add(latency);
+            maxLatencyMillis.accumulateAndGet(latency, Math::max);
+            try {
+                onFinish.run();
+            } catch (Exception e) {
+                log.error("缓存重建收尾失败，key={}", key, e);
+            }
+        }
+    }
+
+    // 超时中断与任务结束互斥，保证中断不会落到下一个任务上
+    private class Timeout {
+        private boolean finished;
+        private boolean fired;
+
+        synchronized void fire(Thread worker) {
+            if (!finished) {
+                fired = true;
+                timedOut.increment();
+                worker.interrupt();
+            }
+        }
+
+        // 返回是否在超时前完成
+        synchronized boolean finish() {
+            finished = true;
+            return !fired;
+        }
+    }
+}
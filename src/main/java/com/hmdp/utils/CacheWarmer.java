@@ -0,0 +1,211 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TTL;
+
+/**
+ * ClassName: CacheWarmer
+ * Package: com.hmdp.utils
+ * Description: 商铺缓存预热。逻辑过期的key未命中时直接返回"店铺不存在"，所以Redis清空或新节点启动后必须先预热
+ * ApplicationRunner在应用进入ACCEPTING_TRAFFIC之前执行，预热完成后才对外报告就绪。
+ * 只写入不存在的key，不覆盖更新或重建写入的新值；写入后按主键重新读取本批商铺，
+ * 读取后被修改过的商铺其失效删除可能已经执行完，由预热用重新读取的值覆盖刚写入的旧值
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 18:10
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+@Order(1)
+public class CacheWarmer implements ApplicationRunner {
+
+    private final ShopMapper shopMapper;
+    private final CacheClient cacheClient;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int concurrency;
+
+    // 写Redis的线程池，同时进行的批次数由信号量限制
+    private final ExecutorService writers;
+    private final Semaphore permits;
+    // 运维接口触发的重新预热在后台线程执行
+    private final ExecutorService trigger = Executors.newSingleThreadExecutor();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    // 已存在而跳过的key、写入期间被修改而重新写入或删除的key
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private volatile long startTime;
+    private volatile long endTime;
+
+    public CacheWarmer(ShopMapper shopMapper, CacheClient cacheClient,
+                       @Value("${hmdp.cache.warm-up.enabled:true}") boolean enabled,
+                       @Value("${hmdp.cache.warm-up.chunk-size:500}") int chunkSize,
+                       @Value("${hmdp.cache.warm-up.concurrency:4}") int concurrency) {
+        this.shopMapper = shopMapper;
+        this.cacheClient = cacheClient;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+        this.writers = Executors.newFixedThreadPool(concurrency);
+        this.permits = new Semaphore(concurrency);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            warmUp();
+        }
+    }
+
+    /**
+     * 后台重新预热，已在执行时直接返回false
+     */
+    public boolean warmUpAsync() {
+        if (running.get()) {
+            return false;
+        }
+        trigger.submit(this::warmUp);
+        return true;
+    }
+
+    /**
+     * 按主键分批读取tb_shop，每批用管道一次写入Redis，阻塞直到全部写完
+     */
+    public void warmUp() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        resetProgress();
+        try {
+            long lastId = 0;
+            while (true) {
+                List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>()
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("limit " + chunkSize));
+                if (shops.isEmpty()) {
+                    break;
+                }
+                loaded.addAndGet(shops.size());
+                lastId = shops.get(shops.size() - 1).getId();
+                // 读取下一批的同时写入当前批，同时写入的批次不超过concurrency
+                permits.acquire();
+                writers.submit(() -> write(shops));
+            }
+            // 拿回全部许可 = 所有批次都已写完
+            permits.acquire(concurrency);
+            permits.release(concurrency);
+            log.info("商铺缓存预热完成：读取{}条，写入{}条，已存在{}条，已修改{}条，失败{}条，耗时{}ms", loaded.get(),
+                    written.get(), skipped.get(), stale.get(), failed.get(), System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("商铺缓存预热失败", e);
+        } finally {
+            endTime = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> progress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        long end = running.get() ? System.currentTimeMillis() : endTime;
+        long elapsed = startTime == 0 ? 0 : end - startTime;
+        progress.put("running", running.get());
+        progress.put("loaded", loaded.get());
+        progress.put("written", written.get());
+        progress.put("skipped", skipped.get());
+        progress.put("stale", stale.get());
+        progress.put("failed", failed.get());
+        progress.put("chunks", chunks.get());
+        progress.put("elapsedMs", elapsed);
+        progress.put("perSecond", elapsed == 0 ? 0 : written.get() * 1000 / elapsed);
+        return progress;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trigger.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private void write(List<Shop> shops) {
+        try {
+            Map<String, Shop> values = new LinkedHashMap<>(shops.size() * 2);
+            for (Shop shop : shops) {
+                values.put(CACHE_SHOP_KEY + shop.getId(), shop);
+            }
+            int count = cacheClient.setBatchIfAbsentWithLogicalExpire(values, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+            written.addAndGet(count);
+            skipped.addAndGet(shops.size() - count);
+            // 重新读取本批商铺：与写入的值不同说明读取后被修改过，用重新读取的值覆盖可能已写入的旧值，
+            // 逻辑过期的key被删除后不会重建；已删除的商铺才删除key。此后的修改在提交后由发件箱删除，一定晚于本次写入
+            List<Long> ids = new ArrayList<>(shops.size());
+            shops.forEach(shop -> ids.add(shop.getId()));
+            Map<Long, Shop> current = new HashMap<>(shops.size() * 2);
+            shopMapper.selectBatchIds(ids).forEach(shop -> current.put(shop.getId(), shop));
+            List<String> removed = new ArrayList<>();
+            for (Shop shop : shops) {
+                Shop latest = current.get(shop.getId());
+                if (shop.equals(latest)) {
+                    continue;
+                }
+                stale.incrementAndGet();
+                if (latest == null) {
+                    removed.add(CACHE_SHOP_KEY + shop.getId());
+                } else {
+                    cacheClient.setWithLogicalExpire(CACHE_SHOP_KEY + shop.getId(), latest, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+                }
+            }
+            if (!removed.isEmpty()) {
+                cacheClient.deleteBatch(removed);
+            }
+        } catch (Exception e) {
+            failed.addAndGet(shops.size());
+            log.error("商铺缓存预热写入失败，本批{}条", shops.size(), e);
+        } finally {
+            chunks.incrementAndGet();
+            permits.release();
+        }
+    }
+
+    private void resetProgress() {
+        loaded.set(0);
+        written.set(0);
+        skipped.set(0);
+        stale.set(0);
+        failed.set(0);
+        chunks.set(0);
+        startTime = System.currentTimeMillis();
+        endTime = 0;
+    }
+}
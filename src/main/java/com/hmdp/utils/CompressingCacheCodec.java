@@ -0,0 +1,119 @@
+package com.hmdp.utils;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ClassName: CompressingCacheCodec
+ * Package: com.hmdp.utils
+ * Description: 压缩装饰器：编码结果超过阈值时用Deflate压缩，格式为 [0xC1][4字节原始长度][压缩数据]；
+ * 读取时根据首字节判断，压缩过的先解压再交给内部编解码器，未压缩的直接交给内部编解码器。
+ * 关闭压缩时仍能读取已压缩的旧值
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 21:50
+ * @Version 1.0
+ */
+public class CompressingCacheCodec implements CacheCodec {
+
+    // 与JSON首字符、二进制格式的0xB1都不冲突
+    static final byte MAGIC = (byte) 0xC1;
+    private static final int HEADER_SIZE = 5;
+
+    private final CacheCodec delegate;
+    // 编码结果不小于该字节数才压缩，<=0 表示不压缩
+    private final int threshold;
+
+    // Deflater/Inflater持有堆外内存，按线程复用
+    private final ThreadLocal<Deflater> deflaters;
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    public CompressingCacheCodec(CacheCodec delegate, int threshold, int level) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return compress(delegate.encode(value));
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        return delegate.decode(decompress(bytes), type);
+    }
+
+    @Override
+    public byte[] encodeWithExpire(Object value, long expireMillis) {
+        return compress(delegate.encodeWithExpire(value, expireMillis));
+    }
+
+    @Override
+    public <R> LogicalValue<R> decodeWithExpire(byte[] bytes, Class<R> type) {
+        return delegate.decodeWithExpire(decompress(bytes), type);
+    }
+
+    @Override
+    public boolean supports(byte[] bytes) {
+        return isCompressed(bytes) || delegate.supports(bytes);
+    }
+
+    static boolean isCompressed(byte[] bytes) {
+        return bytes.length > HEADER_SIZE && bytes[0] == MAGIC;
+    }
+
+    // 压缩后没有变小则保存原值
+    byte[] compress(byte[] raw) {
+        if (threshold <= 0 || raw.length < threshold) {
+            return raw;
+        }
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] out = new byte[HEADER_SIZE + raw.length];
+        int length = HEADER_SIZE;
+        while (!deflater.finished() && length < out.length) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        if (!deflater.finished()) {
+            return raw;
+        }
+        out[0] = MAGIC;
+        out[1] = (byte) (raw.length >>> 24);
+        out[2] = (byte) (raw.length >>> 16);
+        out[3] = (byte) (raw.length >>> 8);
+        out[4] = (byte) raw.length;
+        return Arrays.copyOf(out, length);
+    }
+
+    byte[] decompress(byte[] bytes) {
+        if (!isCompressed(bytes)) {
+            return bytes;
+        }
+        int rawLength = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        byte[] raw = new byte[rawLength];
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IllegalStateException("缓存值解压后长度不符，期望" + rawLength + "，实际" + length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("缓存值解压失败", e);
+        }
+        return raw;
+    }
+}
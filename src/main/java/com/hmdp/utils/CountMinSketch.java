@@ -0,0 +1,77 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ClassName: CountMinSketch
+ * Package: com.hmdp.utils
+ * Description: 无锁的Count-Min Sketch，用固定大小的计数数组估算每个key的访问次数，估计值只会偏大不会偏小。
+ * 每行的下标由key的64位MurmurHash3拆成两个32位哈希做双重哈希得到，各行相互独立，
+ * 不会像String.hashCode()那样让哈希冲突的key在所有行都冲突
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 18:40
+ * @Version 1.0
+ */
+public class CountMinSketch {
+
+    private static final int DEPTH = 4;
+
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    /**
+     * @param width 每行的计数器个数，向上取整为2的幂
+     */
+    public CountMinSketch(int width) {
+        int w = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.mask = w - 1;
+        this.counters = new AtomicLongArray(DEPTH * w);
+    }
+
+    /**
+     * 计数加一，并返回加一后的估计值
+     */
+    public long incrementAndEstimate(String key) {
+        return addAndEstimate(key, 1);
+    }
+
+    /**
+     * 计数加delta，并返回之后的估计值；抽样记录时按抽样间隔累加
+     */
+    public long addAndEstimate(String key, long delta) {
+        long hash = MurmurHash.hash64(key);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters.addAndGet(index(row, hash), delta));
+        }
+        return min;
+    }
+
+    public long estimate(String key) {
+        long hash = MurmurHash.hash64(key);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters.get(index(row, hash)));
+        }
+        return min;
+    }
+
+    /**
+     * 所有计数减半，让估计值反映最近一段时间的访问频率
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, v -> v >>> 1);
+        }
+    }
+
+    // 第row行的哈希为 h1 + row * h2，h2取奇数，与2的幂的行宽互质
+    private int index(int row, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+}
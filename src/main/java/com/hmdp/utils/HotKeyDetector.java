@@ -0,0 +1,131 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ClassName: HotKeyDetector
+ * Package: com.hmdp.utils
+ * Description: 热点key探测。用Count-Min Sketch统计访问频率，超过阈值的key提升为进程内短TTL副本，
+ * 热度下降后降级，避免大促时少数商铺的key压垮单个Redis分片。
+ * 访问按sample-every抽样记录，每次抽中按抽样间隔累加，热点key的估计值不变，其余访问不必计算哈希、更新计数
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 18:55
+ * @Version 1.0
+ */
+@Component
+public class HotKeyDetector {
+
+    private final boolean enabled;
+    private final long threshold;
+    private final int maxKeys;
+    private final int sampleEvery;
+
+    private final CountMinSketch sketch;
+    // 当前的热点key --> 晋升时的访问估计值
+    private final Map<String, Long> hotKeys = new ConcurrentHashMap<>();
+    // 热点key的本地副本
+    private final LRUCache<String, Object> promoted;
+
+    private final LongAdder hits = new LongAdder();
+
+    public HotKeyDetector(@Value("${hmdp.cache.hot-key.enabled:true}") boolean enabled,
+                          @Value("${hmdp.cache.hot-key.threshold:500}") long threshold,
+                          @Value("${hmdp.cache.hot-key.max-keys:100}") int maxKeys,
+                          @Value("${hmdp.cache.hot-key.ttl-seconds:5}") long ttlSeconds,
+                          @Value("${hmdp.cache.hot-key.sketch-width:4096}") int sketchWidth,
+                          @Value("${hmdp.cache.hot-key.sample-every:8}") int sampleEvery) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.maxKeys = maxKeys;
+        this.sampleEvery = Math.max(sampleEvery, 1);
+        this.sketch = new CountMinSketch(sketchWidth);
+        this.promoted = CacheUtil.newLRUCache(maxKeys, TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
+    /**
+     * 记录一次访问，估计值达到阈值时晋升为热点key
+     */
+    public void record(String key) {
+        if (!enabled || sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            return;
+        }
+        long estimate = sketch.addAndEstimate(key, sampleEvery);
+        if (estimate >= threshold && hotKeys.size() < maxKeys) {
+            hotKeys.putIfAbsent(key, estimate);
+        }
+    }
+
+    public boolean isHot(String key) {
+        return enabled && hotKeys.containsKey(key);
+    }
+
+    public Object get(String key) {
+        if (!isHot(key)) {
+            return null;
+        }
+        Object value = promoted.get(key, false);
+        if (value != null) {
+            hits.increment();
+        }
+        return value;
+    }
+
+    // 只保存热点key的副本
+    public void put(String key, Object value) {
+        if (isHot(key)) {
+            promoted.put(key, value);
+        }
+    }
+
+    public void evict(String key) {
+        promoted.remove(key);
+    }
+
+    /**
+     * 每个窗口把计数减半，估计值回落到阈值一半以下的key降级并删除本地副本
+     */
+    @Scheduled(fixedDelayString = "${hmdp.cache.hot-key.window-millis:1000}")
+    public void decay() {
+        if (!enabled) {
+            return;
+        }
+        sketch.decay();
+        hotKeys.keySet().removeIf(key -> {
+            boolean cold = sketch.estimate(key) < threshold / 2;
+            if (cold) {
+                promoted.remove(key);
+            }
+            return cold;
+        });
+    }
+
+    public List<Map<String, Object>> hotKeys() {
+        List<Map<String, Object>> list = new ArrayList<>(hotKeys.size());
+        for (String key : hotKeys.keySet()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", key);
+            item.put("estimate", sketch.estimate(key));
+            list.add(item);
+        }
+        list.sort((a, b) -> Long.compare((Long) b.get("estimate"), (Long) a.get("estimate")));
+        return list;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+}
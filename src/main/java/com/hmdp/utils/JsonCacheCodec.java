@@ -0,0 +1,55 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * ClassName: JsonCacheCodec
+ * Package: com.hmdp.utils
+ * Description: JSON编解码，逻辑过期的值沿用RedisData的格式 {"data":..., "expireTime":...}
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 16:55
+ * @Version 1.0
+ */
+public class JsonCacheCodec implements CacheCodec {
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        return JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public byte[] encodeWithExpire(Object value, long expireMillis) {
+        RedisData redisData = new RedisData();
+        redisData.setData(value);
+        redisData.setExpireTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(expireMillis), ZoneId.systemDefault()));
+        return encode(redisData);
+    }
+
+    @Override
+    public <R> LogicalValue<R> decodeWithExpire(byte[] bytes, Class<R> type) {
+        // 只解析一次，data直接从已解析的JSONObject转换
+        JSONObject json = JSONUtil.parseObj(new String(bytes, StandardCharsets.UTF_8));
+        LocalDateTime expireTime = json.get("expireTime", LocalDateTime.class);
+        JSONObject data = json.getJSONObject("data");
+        return new LogicalValue<>(
+                data == null ? null : data.toBean(type),
+                expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    @Override
+    public boolean supports(byte[] bytes) {
+        return bytes.length > 0 && (bytes[0] == '{' || bytes[0] == '[' || bytes[0] == '"');
+    }
+}
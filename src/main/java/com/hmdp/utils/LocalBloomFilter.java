@@ -0,0 +1,64 @@
+package com.hmdp.utils;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ClassName: LocalBloomFilter
+ * Package: com.hmdp.utils
+ * Description: 堆内布隆过滤器，位数组为long[]（AtomicLongArray保证并发写入不丢位）
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 15:52
+ * @Version 1.0
+ */
+public class LocalBloomFilter extends BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    public LocalBloomFilter(String name, long expectedInsertions, double fpp) {
+        super(name, expectedInsertions, fpp);
+        this.bits = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+    }
+
+    @Override
+    public void putAll(Collection<Long> ids) {
+        for (Long id : ids) {
+            put(id);
+        }
+    }
+
+    @Override
+    protected void setBits(long[] indexes) {
+        for (long index : indexes) {
+            int i = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old;
+            do {
+                old = bits.get(i);
+                if ((old & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(i, old, old | mask));
+        }
+    }
+
+    @Override
+    protected boolean getBits(long[] indexes) {
+        for (long index : indexes) {
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected long bitCount() {
+        long count = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            count += Long.bitCount(bits.get(i));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,18 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 带逻辑过期时间的缓存值，过期时间为epoch毫秒，比较时不需要构造LocalDateTime
+ */
+@Data
+@AllArgsConstructor
+public class LogicalValue<R> {
+    private R data;
+    private long expireMillis;
+
+    public boolean isExpired() {
+        return expireMillis <= System.currentTimeMillis();
+    }
+}
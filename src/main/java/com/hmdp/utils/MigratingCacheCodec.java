@@ -0,0 +1,50 @@
+package com.hmdp.utils;
+
+/**
+ * ClassName: MigratingCacheCodec
+ * Package: com.hmdp.utils
+ * Description: 编码格式迁移期间使用：按目标格式写入，读取时根据首字节识别新旧两种格式
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 17:30
+ * @Version 1.0
+ */
+public class MigratingCacheCodec implements CacheCodec {
+
+    private final CacheCodec writer;
+    private final CacheCodec other;
+
+    public MigratingCacheCodec(CacheCodec writer, CacheCodec other) {
+        this.writer = writer;
+        this.other = other;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return writer.encode(value);
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        return readerOf(bytes).decode(bytes, type);
+    }
+
+    @Override
+    public byte[] encodeWithExpire(Object value, long expireMillis) {
+        return writer.encodeWithExpire(value, expireMillis);
+    }
+
+    @Override
+    public <R> LogicalValue<R> decodeWithExpire(byte[] bytes, Class<R> type) {
+        return readerOf(bytes).decodeWithExpire(bytes, type);
+    }
+
+    @Override
+    public boolean supports(byte[] bytes) {
+        return writer.supports(bytes) || other.supports(bytes);
+    }
+
+    private CacheCodec readerOf(byte[] bytes) {
+        return !writer.supports(bytes) && other.supports(bytes) ? other : writer;
+    }
+}
@@ -0,0 +1,98 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.IVoucherOrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SHARDED_KEY;
+
+/**
+ * ClassName: OrderTimeoutCanceller
+ * Package: com.hmdp.utils
+ * Description: 超时未支付的秒杀订单自动取消。订单落库时加入延迟队列，到期后仍未支付的订单改为已取消、归还数据库库存，
+ * 事务提交后归还Redis库存、移除购买用户、清除售罄标记。
+ * 归还Redis库存失败时任务会重试，但订单已是取消状态不会再归还，由对账发现并修正
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 03:30
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class OrderTimeoutCanceller {
+
+    private static final String QUEUE = "order-timeout";
+
+    private final RedisDelayQueue redisDelayQueue;
+    private final IVoucherOrderService voucherOrderService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ShardedStock shardedStock;
+    private final SoldOutFlags soldOutFlags;
+    private final long timeoutMillis;
+
+    public OrderTimeoutCanceller(RedisDelayQueue redisDelayQueue, IVoucherOrderService voucherOrderService,
+                                 StringRedisTemplate stringRedisTemplate, ShardedStock shardedStock, SoldOutFlags soldOutFlags,
+                                 @Value("${hmdp.seckill.order-timeout-millis:900000}") long timeoutMillis) {
+        this.redisDelayQueue = redisDelayQueue;
+        this.voucherOrderService = voucherOrderService;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.shardedStock = shardedStock;
+        this.soldOutFlags = soldOutFlags;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @PostConstruct
+    public void init() {
+        redisDelayQueue.register(QUEUE, this::cancel);
+    }
+
+    /**
+     * 订单落库后开始计时
+     */
+    public void schedule(List<VoucherOrder> orders) {
+        List<String> orderIds = new ArrayList<>(orders.size());
+        orders.forEach(order -> orderIds.add(order.getId().toString()));
+        redisDelayQueue.offer(QUEUE, orderIds, timeoutMillis);
+    }
+
+    private void cancel(List<String> members) {
+        List<Long> orderIds = new ArrayList<>(members.size());
+        members.forEach(member -> orderIds.add(Long.valueOf(member)));
+        List<VoucherOrder> cancelled = voucherOrderService.cancelUnpaidOrders(orderIds);
+        if (cancelled.isEmpty()) {
+            return;
+        }
+        // 1.归还Redis库存、移除购买用户（可以重新下单），写入用户下单时路由到的库存和购买用户集合
+        Map<Long, Integer> shardCounts = new HashMap<>();
+        cancelled.forEach(order -> shardCounts.computeIfAbsent(order.getVoucherId(), shardedStock::shardCount));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (VoucherOrder order : cancelled) {
+                String tag = SeckillKeys.tag(order.getVoucherId(), order.getUserId(), shardCounts.get(order.getVoucherId()));
+                stringConnection.incr(SeckillKeys.stock(tag));
+                stringConnection.sRem(SeckillKeys.buyers(tag), order.getUserId().toString());
+            }
+            // 分片库存重新加入平衡任务，归还到一个分片的库存会被分给其他分片
+            shardCounts.forEach((voucherId, shards) -> {
+                if (shards > 0) {
+                    stringConnection.sAdd(SECKILL_SHARDED_KEY, voucherId.toString());
+                }
+            });
+            return null;
+        });
+        // 2.有库存了，清除各节点的售罄标记
+        shardCounts.keySet().forEach(soldOutFlags::clear);
+        log.info("取消超时未支付订单{}个", cancelled.size());
+    }
+}
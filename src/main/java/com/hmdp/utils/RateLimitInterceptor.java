@@ -0,0 +1,135 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.config.RateLimitProperties;
+import com.hmdp.config.RateLimitProperties.Rule;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.RATE_LIMIT_KEY;
+
+/**
+ * ClassName: RateLimitInterceptor
+ * Package: com.hmdp.utils
+ * Description: 按路径配置的限流拦截器，可以按路径、优惠券、用户、IP限流。
+ * 先取本节点的令牌桶，通过后再取所有节点共享的Redis令牌桶（配置了才取），
+ * 任何一个没有令牌都直接返回429，不进入业务逻辑。Redis不可用时只按本地令牌桶限流
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 04:00
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT;
+
+    static {
+        TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>();
+        TOKEN_BUCKET_SCRIPT.setLocation(new ClassPathResource("lua/token_bucket.lua"));
+        TOKEN_BUCKET_SCRIPT.setResultType(Long.class);
+    }
+
+    private static final String REJECTED_BODY = JSONUtil.toJsonStr(Result.fail("请求过于频繁，请稍后再试"));
+
+    private final RateLimitProperties properties;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    // 规则下标:维度值 --> 本地令牌桶
+    private final LRUCache<String, TokenBucket> buckets;
+
+    public RateLimitInterceptor(RateLimitProperties properties, StringRedisTemplate stringRedisTemplate) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.buckets = CacheUtil.newLRUCache(properties.getLocalCapacity());
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        String path = urlPathHelper.getLookupPathForRequest(request);
+        List<Rule> rules = properties.getRules();
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (!pathMatcher.match(rule.getPath(), path)) {
+                continue;
+            }
+            String key = i + ":" + dimensionValue(rule, request);
+            if (!tryAcquire(rule, key)) {
+                response.setStatus(TOO_MANY_REQUESTS);
+                response.setHeader("Retry-After", "1");
+                response.setContentType("application/json;charset=UTF-8");
+                response.getOutputStream().write(REJECTED_BODY.getBytes(StandardCharsets.UTF_8));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean tryAcquire(Rule rule, String key) {
+        // 1.本地令牌桶，不访问Redis
+        TokenBucket bucket = buckets.get(key, () -> new TokenBucket(rule.getCapacity(), rule.getRate()));
+        if (!bucket.tryAcquire()) {
+            return false;
+        }
+        // 2.所有节点共享的令牌桶
+        if (rule.getRedisRate() <= 0) {
+            return true;
+        }
+        // 时间取自Redis服务器，各节点的时钟偏差不影响令牌补充
+        Long allowed;
+        try {
+            allowed = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT, Collections.singletonList(RATE_LIMIT_KEY + key),
+                    String.valueOf(rule.getRedisCapacity()), String.valueOf(rule.getRedisRate()));
+        } catch (DataAccessException e) {
+            // 限流不能让请求因为Redis故障失败，已经通过了本地令牌桶，放行
+            log.warn("Redis令牌桶不可用，按本地令牌桶的结果放行，key={}：{}", key, e.getMessage());
+            return true;
+        }
+        return allowed == null || allowed == 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String dimensionValue(Rule rule, HttpServletRequest request) {
+        switch (rule.getDimension()) {
+            case VOUCHER:
+                Map<String, String> variables =
+                        (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+                return variables == null ? "" : variables.getOrDefault(rule.getVariable(), "");
+            case USER:
+                UserDTO user = UserHolder.getUser();
+                return user == null ? "ip:" + request.getRemoteAddr() : "user:" + user.getId();
+            case IP:
+                // 部署在代理后面时由server.forward-headers-strategy把真实IP设置为remoteAddr，不直接信任请求头
+                return request.getRemoteAddr();
+            default:
+                return "";
+        }
+    }
+}
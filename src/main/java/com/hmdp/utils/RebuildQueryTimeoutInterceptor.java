@@ -0,0 +1,41 @@
+package com.hmdp.utils;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * ClassName: RebuildQueryTimeoutInterceptor
+ * Package: com.hmdp.utils
+ * Description: 缓存重建线程上执行的SQL带上重建剩余的时间作为查询超时，超时后由数据库驱动取消查询，
+ * 不再只依赖中断线程（JDBC驱动阻塞在网络读上时不响应中断）。JDBC查询超时以秒为单位，向上取整，至少1秒
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 09:40
+ * @Version 1.0
+ */
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})
+})
+public class RebuildQueryTimeoutInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        long remaining = CacheRebuildScheduler.remainingMillis();
+        if (remaining >= 0 && result instanceof Statement) {
+            int seconds = (int) Math.max(1, (remaining + 999) / 1000);
+            Statement statement = (Statement) result;
+            // 已配置了更短的超时时保留
+            if (statement.getQueryTimeout() == 0 || statement.getQueryTimeout() > seconds) {
+                statement.setQueryTimeout(seconds);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package com.hmdp.utils;
+
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * ClassName: RedisBloomFilter
+ * Package: com.hmdp.utils
+ * Description: 基于Redis bitmap的布隆过滤器，所有节点共享同一份位数组
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 16:05
+ * @Version 1.0
+ */
+public class RedisBloomFilter extends BloomFilter {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String key;
+
+    public RedisBloomFilter(String name, long expectedInsertions, double fpp,
+                            StringRedisTemplate stringRedisTemplate, String key) {
+        super(name, expectedInsertions, fpp);
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.key = key;
+    }
+
+    @Override
+    public void putAll(Collection<Long> ids) {
+        // 一批id的所有位通过管道一次写入
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Long id : ids) {
+                for (long index : indexes(id)) {
+                    conn.setBit(key, index, true);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    protected void setBits(long[] indexes) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (long index : indexes) {
+                conn.setBit(key, index, true);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    protected boolean getBits(long[] indexes) {
+        // k个位通过管道一次读取，只需一次网络往返
+        List<Object> bits = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (long index : indexes) {
+                conn.getBit(key, index);
+            }
+            return null;
+        });
+        for (Object bit : bits) {
+            if (!Boolean.TRUE.equals(bit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected long bitCount() {
+        Long count = stringRedisTemplate.execute(
+                (RedisCallback<Long>) connection -> connection.bitCount(key.getBytes(StandardCharsets.UTF_8)));
+        return count == null ? 0 : count;
+    }
+}
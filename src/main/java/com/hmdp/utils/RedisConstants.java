@@ -12,12 +12,35 @@ public class RedisConstants {
     public static final String CACHE_SHOP_KEY = "cache:shop:";
     public static final String CACHE_SHOPTYPE_KEY = "cache:shoptype:";
 
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_RELEASE_CHANNEL = "lock:release";
+
+    public static final String ID_KEY = "icr:";
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_WINDOW_KEY = "seckill:window:";
+    public static final String SECKILL_STREAM_KEY = "seckill:orders";
+    public static final String SECKILL_DEAD_STREAM_KEY = "seckill:orders:dead";
+    public static final String SECKILL_STREAMS_KEY = "seckill:streams";
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:sold-out";
+    public static final String SECKILL_SHARDED_KEY = "seckill:sharded";
+    public static final String LOCK_SECKILL_REBALANCE_KEY = "lock:seckill:rebalance";
+    public static final String LOCK_SECKILL_PRELOAD_KEY = "lock:seckill:preload";
+    public static final String LOCK_SECKILL_RECONCILE_KEY = "lock:seckill:reconcile";
+    public static final String DELAY_QUEUE_KEY = "delay:";
+    public static final String RATE_LIMIT_KEY = "rate:limit:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    public static final String SHOP_GEO_SCROLL_KEY = "shop:geo:scroll:";
+    public static final String SHOP_GEO_CHANNEL = "shop:geo:changed";
+    public static final String SHOP_NAME_CHANNEL = "shop:name:changed";
     public static final String USER_SIGN_KEY = "sign:";
+
+    public static final String BLOOM_KEY = "bloom:";
+    public static final String BLOOM_ADD_CHANNEL = "bloom:add";
 }
@@ -0,0 +1,185 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.hmdp.utils.RedisConstants.DELAY_QUEUE_KEY;
+
+/**
+ * ClassName: RedisDelayQueue
+ * Package: com.hmdp.utils
+ * Description: 基于Redis ZSET的延迟队列，分数是到期时间。
+ * 轮询线程用Lua脚本原子地取出一批到期任务，同时把分数改为租约到期时间，交给工作线程处理；
+ * 处理成功后确认删除，处理失败或进程退出的任务在租约到期后被重新取出，至少处理一次，处理方需要幂等。
+ * 各业务通过register注册自己的队列和处理方法
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 03:00
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class RedisDelayQueue {
+
+    // 脚本返回到期的任务列表，结果类型只能传List.class
+    @SuppressWarnings("unchecked")
+    private static final Class<List<String>> STRING_LIST = (Class<List<String>>) (Class<?>) List.class;
+    private static final DefaultRedisScript<List<String>> POLL_SCRIPT;
+    private static final DefaultRedisScript<Long> ACK_SCRIPT;
+
+    static {
+        POLL_SCRIPT = new DefaultRedisScript<>();
+        POLL_SCRIPT.setLocation(new ClassPathResource("lua/delay_poll.lua"));
+        POLL_SCRIPT.setResultType(STRING_LIST);
+        ACK_SCRIPT = new DefaultRedisScript<>();
+        ACK_SCRIPT.setLocation(new ClassPathResource("lua/delay_ack.lua"));
+        ACK_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int batchSize;
+    private final long pollMillis;
+    private final long leaseMillis;
+
+    // 队列名 --> 处理方法
+    private final Map<String, Consumer<List<String>>> handlers = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService poller =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("delay-queue-poller-", true));
+    // 工作线程都忙时由轮询线程自己处理，轮询自然放慢，不会把到期任务都取到内存里
+    private final ThreadPoolExecutor workers;
+
+    public RedisDelayQueue(StringRedisTemplate stringRedisTemplate,
+                           @Value("${hmdp.delay-queue.workers:2}") int workers,
+                           @Value("${hmdp.delay-queue.batch-size:100}") int batchSize,
+                           @Value("${hmdp.delay-queue.poll-millis:1000}") long pollMillis,
+                           @Value("${hmdp.delay-queue.lease-millis:60000}") long leaseMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.leaseMillis = leaseMillis;
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers), new NamedThreadFactory("delay-queue-", false),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PostConstruct
+    public void start() {
+        poller.scheduleWithFixedDelay(this::pollAll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 注册队列的处理方法，处理方法抛出异常时这一批任务都不确认，租约到期后重新处理
+     */
+    public void register(String queue, Consumer<List<String>> handler) {
+        handlers.put(queue, handler);
+    }
+
+    /**
+     * 加入任务，已存在时更新到期时间
+     */
+    public void offer(String queue, String member, long delayMillis) {
+        stringRedisTemplate.opsForZSet().add(DELAY_QUEUE_KEY + queue, member, System.currentTimeMillis() + delayMillis);
+    }
+
+    /**
+     * 批量加入到期时间相同的任务
+     */
+    public void offer(String queue, Collection<String> members, long delayMillis) {
+        if (members.isEmpty()) {
+            return;
+        }
+        double deadline = System.currentTimeMillis() + delayMillis;
+        Set<TypedTuple<String>> tuples = new HashSet<>(members.size());
+        for (String member : members) {
+            tuples.add(new DefaultTypedTuple<>(member, deadline));
+        }
+        stringRedisTemplate.opsForZSet().add(DELAY_QUEUE_KEY + queue, tuples);
+    }
+
+    /**
+     * 取消任务
+     * @return 任务不存在返回false
+     */
+    public boolean remove(String queue, String member) {
+        Long removed = stringRedisTemplate.opsForZSet().remove(DELAY_QUEUE_KEY + queue, member);
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * @return 队列中的任务数，包括已取出还没确认的
+     */
+    public long size(String queue) {
+        Long size = stringRedisTemplate.opsForZSet().zCard(DELAY_QUEUE_KEY + queue);
+        return size == null ? 0 : size;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        poller.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void pollAll() {
+        for (Map.Entry<String, Consumer<List<String>>> entry : handlers.entrySet()) {
+            try {
+                // 一直取到没有到期任务
+                List<String> members;
+                do {
+                    long lease = System.currentTimeMillis() + leaseMillis;
+                    members = poll(entry.getKey(), lease);
+                    if (!members.isEmpty()) {
+                        List<String> batch = members;
+                        workers.execute(() -> handle(entry.getKey(), entry.getValue(), batch, lease));
+                    }
+                } while (members.size() == batchSize && !poller.isShutdown());
+            } catch (Exception e) {
+                log.error("轮询延迟队列失败，队列={}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private List<String> poll(String queue, long lease) {
+        List<String> members = stringRedisTemplate.execute(POLL_SCRIPT, Collections.singletonList(DELAY_QUEUE_KEY + queue),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(batchSize), String.valueOf(lease));
+        return members == null ? Collections.emptyList() : members;
+    }
+
+    private void handle(String queue, Consumer<List<String>> handler, List<String> members, long lease) {
+        try {
+            handler.accept(members);
+        } catch (Exception e) {
+            log.error("处理延迟任务失败，租约到期后重试，队列={}，任务数={}", queue, members.size(), e);
+            return;
+        }
+        List<String> args = new ArrayList<>(members.size() + 1);
+        args.add(String.valueOf(lease));
+        args.addAll(members);
+        stringRedisTemplate.execute(ACK_SCRIPT, Collections.singletonList(DELAY_QUEUE_KEY + queue), args.toArray());
+    }
+}
@@ -0,0 +1,187 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+import static com.hmdp.utils.RedisConstants.ID_KEY;
+
+/**
+ * ClassName: RedisIdWorker
+ * Package: com.hmdp.utils
+ * Description: 全局唯一id：符号位0 + 31位时间戳（秒，从2022-01-01起）+ 32位序列号。
+ * 序列号来自Redis中按天自增的key，每个节点用一次INCRBY预取一段，段内分配不访问网络，剩余不足时后台预取下一段。
+ * 同一节点的id单调递增；不同节点之间按秒有序，同一秒内按各自号段的先后，step为1时跨节点也严格按分配顺序递增。
+ * 时钟小幅回拨时沿用上次的时间戳继续分配，超过允许范围则拒绝生成
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 23:40
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class RedisIdWorker {
+
+    // 开始时间戳 2022-01-01 00:00:00 UTC
+    private static final long BEGIN_TIMESTAMP = 1640995200L;
+    // 序列号的位数
+    private static final int COUNT_BITS = 32;
+    private static final long MAX_SEQUENCE = (1L << COUNT_BITS) - 1;
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    // (key, 增量) --> 自增后的值
+    private final BiFunction<String, Long, Long> incrBy;
+    // 当前时间，epoch毫秒
+    private final LongSupplier clock;
+    private final ZoneId zone;
+    // 每次预取的序列号数量
+    private final long step;
+    // 允许的最大时钟回拨
+    private final long maxBackwardMillis;
+
+    // key前缀 --> 该业务的号段
+    private final Map<String, Generator> generators = new ConcurrentHashMap<>();
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(new NamedThreadFactory("id-prefetch-", true));
+
+    @Autowired
+    public RedisIdWorker(StringRedisTemplate stringRedisTemplate,
+                         @Value("${hmdp.id.step:1000}") long step,
+                         @Value("${hmdp.id.max-backward-millis:5000}") long maxBackwardMillis) {
+        this((key, delta) -> stringRedisTemplate.opsForValue().increment(key, delta),
+                System::currentTimeMillis, ZoneId.systemDefault(), step, maxBackwardMillis);
+    }
+
+    RedisIdWorker(BiFunction<String, Long, Long> incrBy, LongSupplier clock, ZoneId zone,
+                  long step, long maxBackwardMillis) {
+        if (step < 1) {
+            throw new IllegalArgumentException("step必须大于0");
+        }
+        this.incrBy = incrBy;
+        this.clock = clock;
+        this.zone = zone;
+        this.step = step;
+        this.maxBackwardMillis = maxBackwardMillis;
+    }
+
+    /**
+     * 生成id
+     * @param keyPrefix 业务前缀，不同业务的序列号互不影响
+     */
+    public long nextId(String keyPrefix) {
+        return generators.computeIfAbsent(keyPrefix, Generator::new).next();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetcher.shutdownNow();
+    }
+
+    // 一段已从Redis取得的序列号 [next, end]
+    private static class Segment {
+        private final String day;
+        private long next;
+        private final long end;
+
+        Segment(String day, long next, long end) {
+            this.day = day;
+            this.next = next;
+            this.end = end;
+        }
+
+        long remaining() {
+            return end - next + 1;
+        }
+    }
+
+    private class Generator {
+        private final String keyPrefix;
+        // 上次使用的时间戳（秒），只增不减
+        private long lastSecond;
+        // 当前日期的起止秒数，跨天时重新计算日期
+        private String day;
+        private long dayStart = Long.MAX_VALUE;
+        private long dayEnd = Long.MIN_VALUE;
+        private Segment current;
+        private CompletableFuture<Segment> prefetch;
+
+        Generator(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        synchronized long next() {
+            // 1.生成时间戳，时钟回拨时沿用上次的时间戳
+            long now = Math.floorDiv(clock.getAsLong(), 1000L);
+            if (now < lastSecond) {
+                long backward = (lastSecond - now) * 1000;
+                if (backward > maxBackwardMillis) {
+                    throw new IllegalStateException("时钟回拨" + backward + "ms，超过允许的" + maxBackwardMillis + "ms，拒绝生成id");
+                }
+                now = lastSecond;
+            }
+            lastSecond = now;
+            // 2.取序列号，号段用完或跨天时换新的号段
+            String today = dayOf(now);
+            if (current == null || !current.day.equals(today) || current.remaining() <= 0) {
+                current = nextSegment(today);
+            }
+            long sequence = current.next++;
+            // 剩余不足20%时后台预取下一段
+            if (prefetch == null && step > 1 && current.remaining() * 5 < step) {
+                String day = current.day;
+                prefetch = CompletableFuture.supplyAsync(() -> fetch(keyPrefix, day), prefetcher);
+            }
+            // 3.拼接并返回
+            return (now - BEGIN_TIMESTAMP) << COUNT_BITS | sequence;
+        }
+
+        private Segment nextSegment(String today) {
+            if (prefetch != null) {
+                CompletableFuture<Segment> future = prefetch;
+                prefetch = null;
+                try {
+                    Segment segment = future.join();
+                    if (segment.day.equals(today)) {
+                        return segment;
+                    }
+                } catch (Exception e) {
+                    log.warn("预取id号段失败，同步重试，前缀={}", keyPrefix, e);
+                }
+            }
+            return fetch(keyPrefix, today);
+        }
+
+        private String dayOf(long second) {
+            if (second < dayStart || second >= dayEnd) {
+                LocalDate date = Instant.ofEpochSecond(second).atZone(zone).toLocalDate();
+                day = date.format(DAY_FORMATTER);
+                dayStart = date.atStartOfDay(zone).toEpochSecond();
+                dayEnd = date.plusDays(1).atStartOfDay(zone).toEpochSecond();
+            }
+            return day;
+        }
+    }
+
+    private Segment fetch(String keyPrefix, String day) {
+        Long end = incrBy.apply(ID_KEY + keyPrefix + ":" + day, step);
+        if (end == null || end > MAX_SEQUENCE) {
+            throw new IllegalStateException("当天的id序列号已用完，前缀=" + keyPrefix);
+        }
+        return new Segment(day, end - step + 1, end);
+    }
+}
@@ -0,0 +1,231 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.hmdp.utils.RedisConstants.LOCK_RELEASE_CHANNEL;
+
+/**
+ * ClassName: RedisLock
+ * Package: com.hmdp.utils
+ * Description: 基于Redis的分布式锁。
+ * 锁是一个hash（owner、count、token），加锁、释放、续期都由Lua脚本原子完成，只有持有者能释放；
+ * 持有期间由看门狗按租期的1/3续期，进程宕机后租期到了锁自动释放；
+ * 每次新加锁从该锁自己的计数器（与锁在同一个slot）取一个递增的fencing token，
+ * 写入受保护的数据时带上token，数据旁记录已写入的最大token，更小的token说明是过期持有者，写入被拒绝（见CacheClient的重建写入）；
+ * 等待锁时订阅释放通知，被唤醒后再尝试，不再循环休眠
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 21:10
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class RedisLock {
+
+    private static final DefaultRedisScript<Long> LOCK_SCRIPT = script("lua/lock.lua");
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = script("lua/unlock.lua");
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = script("lua/renew.lua");
+
+    // 本节点的标识，与线程id组成持有者标识
+    private final String nodeId = UUID.fastUUID().toString(true);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long leaseMillis;
+
+    private final ScheduledExecutorService watchdog =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("lock-watchdog-", true));
+
+    // 锁的key --> 正在等待该锁的线程
+    private final Map<String, Set<Thread>> waiters = new ConcurrentHashMap<>();
+
+    public RedisLock(StringRedisTemplate stringRedisTemplate,
+                     @Value("${hmdp.lock.lease-millis:30000}") long leaseMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * 尝试加锁一次，不等待，不可重入
+     * @return 获取失败返回null
+     */
+    public Lease tryLock(String key) {
+        String owner = currentOwner();
+        long result = attempt(key, owner, false);
+        return result > 0 ? new Lease(key, owner, result) : null;
+    }
+
+    /**
+     * 加锁，获取失败时等待锁释放通知，最多等待waitTime
+     * @param reentrant 同一线程已持有时是否允许再次获取，每次获取都要对应一次释放
+     * @return 超时仍未获取返回null
+     */
+    public Lease tryLock(String key, long waitTime, TimeUnit unit, boolean reentrant) throws InterruptedException {
+        String owner = currentOwner();
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        Thread current = Thread.currentThread();
+        // 先登记为等待者再尝试：尝试失败之后才到达的释放通知会留下unpark许可，park不会错过
+        waiters.compute(key, (k, threads) -> {
+            Set<Thread> set = threads == null ? ConcurrentHashMap.newKeySet() : threads;
+            set.add(current);
+            return set;
+        });
+        try {
+            while (true) {
+                long result = attempt(key, owner, reentrant);
+                if (result > 0) {
+                    return new Lease(key, owner, result);
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                // 最多等到锁的剩余租期，防止通知丢失时一直等待
+                LockSupport.parkNanos(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(-result)));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiters.computeIfPresent(key, (k, threads) -> {
+                threads.remove(current);
+                return threads.isEmpty() ? null : threads;
+            });
+        }
+    }
+
+    /**
+     * 收到锁释放通知 --> 唤醒本节点等待该锁的线程
+     */
+    public void onReleased(String key) {
+        Set<Thread> threads = waiters.get(key);
+        if (threads != null) {
+            threads.forEach(LockSupport::unpark);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    private String currentOwner() {
+        return nodeId + ":" + Thread.currentThread().getId();
+    }
+
+    // 成功返回fencing token，失败返回 -剩余租期毫秒数
+    private long attempt(String key, String owner, boolean reentrant) {
+        Long result = stringRedisTemplate.execute(LOCK_SCRIPT, Arrays.asList(key, fenceKey(key)),
+                owner, String.valueOf(leaseMillis), reentrant ? "1" : "0");
+        return result == null ? -1L : result;
+    }
+
+    /**
+     * 与key在同一个slot的fencing token key：key已有hash tag时直接加后缀，否则把整个key作为hash tag
+     */
+    public static String fenceKey(String key) {
+        int open = key.indexOf('{');
+        int close = open < 0 ? -1 : key.indexOf('}', open + 1);
+        return close > open + 1 ? key + ":fence" : "{" + key + "}:fence";
+    }
+
+    private static DefaultRedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 一次成功的加锁，可以在其他线程中释放（如异步重建任务结束时）
+     */
+    public class Lease implements AutoCloseable {
+
+        private final String key;
+        private final String owner;
+        private final long fencingToken;
+        private final AtomicBoolean released = new AtomicBoolean();
+        // 续期失败（锁已过期或被他人获取）后为false
+        private volatile boolean held = true;
+        private final ScheduledFuture<?> renewal;
+
+        private Lease(String key, String owner, long fencingToken) {
+            this.key = key;
+            this.owner = owner;
+            this.fencingToken = fencingToken;
+            long period = Math.max(1, leaseMillis / 3);
+            this.renewal = watchdog.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 加锁时生成的递增序号，重入时与首次加锁相同
+         */
+        public long getFencingToken() {
+            return fencingToken;
+        }
+
+        /**
+         * 是否仍持有锁；看门狗续期失败后返回false，此时不应再写入受保护的数据
+         */
+        public boolean isHeld() {
+            return held && !released.get();
+        }
+
+        /**
+         * 释放锁，重复调用只生效一次
+         */
+        public void unlock() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            renewal.cancel(false);
+            Long result = stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(key), owner, LOCK_RELEASE_CHANNEL);
+            if (result != null && result < 0) {
+                log.warn("释放锁时已不是持有者，key={}，token={}", key, fencingToken);
+            }
+        }
+
+        @Override
+        public void close() {
+            unlock();
+        }
+
+        private void renew() {
+            try {
+                Long result = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key),
+                        owner, String.valueOf(leaseMillis));
+                if (result != null && result == 0) {
+                    held = false;
+                    renewal.cancel(false);
+                    log.warn("锁续期失败，已不是持有者，key={}，token={}", key, fencingToken);
+                }
+            } catch (Exception e) {
+                // Redis暂时不可用：保留任务，下个周期再试
+                log.warn("锁续期异常，key={}", key, e);
+            }
+        }
+    }
+}
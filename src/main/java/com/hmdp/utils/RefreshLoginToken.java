@@ -29,15 +29,20 @@ public class RefreshLoginToken implements HandlerInterceptor {
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         String token = request.getHeader("authorization");
         String tokenKey = LOGIN_USER_KEY+token;
-        Map<Object, Object> userMap = stringRedisTemplate.opsForHash().entries(tokenKey);
+        Map<Object, Object> userMap = cacheMetrics.redis("hgetall", () -> stringRedisTemplate.opsForHash().entries(tokenKey));
         if (userMap.isEmpty()) {
+            cacheMetrics.miss(LOGIN_USER_KEY);
             return true;
         }
-        stringRedisTemplate.expire(tokenKey,LOGIN_USER_TTL, TimeUnit.SECONDS);
+        cacheMetrics.hit(LOGIN_USER_KEY);
+        cacheMetrics.redis("expire", () -> stringRedisTemplate.expire(tokenKey,LOGIN_USER_TTL, TimeUnit.SECONDS));
 
         UserDTO userDTO = BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
         UserHolder.saveUser(userDTO);
@@ -0,0 +1,89 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STREAM_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_WINDOW_KEY;
+
+/**
+ * ClassName: SeckillKeys
+ * Package: com.hmdp.utils
+ * Description: 秒杀相关的Redis key。下单脚本访问的库存、购买用户、时间窗口和订单消息流使用同一个hash tag，
+ * 集群模式下落在同一个slot，脚本可以原子执行；每个秒杀券有自己的订单消息流，消息流的key登记在 seckill:streams 中供消费者发现。
+ * 分片库存的秒杀券每个分片有自己的hash tag {voucherId:shard}，用户按id固定路由到一个分片，该分片的库存、购买用户、时间窗口和消息流在同一个slot
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 09:00
+ * @Version 1.0
+ */
+public final class SeckillKeys {
+
+    private SeckillKeys() {
+    }
+
+    /**
+     * 秒杀券的hash tag {voucherId}
+     */
+    public static String tag(Long voucherId) {
+        return "{" + voucherId + "}";
+    }
+
+    /**
+     * 分片的hash tag {voucherId:shard}
+     */
+    public static String tag(Long voucherId, int shard) {
+        return "{" + voucherId + ":" + shard + "}";
+    }
+
+    /**
+     * 用户下单使用的hash tag：不分片时是秒杀券的tag，分片时是用户id路由到的分片的tag
+     */
+    public static String tag(Long voucherId, Long userId, int shards) {
+        return shards > 0 ? tag(voucherId, shardOf(userId, shards)) : tag(voucherId);
+    }
+
+    /**
+     * 秒杀券下单使用的全部hash tag，不分片时只有秒杀券的tag
+     */
+    public static List<String> tags(Long voucherId, int shards) {
+        if (shards <= 0) {
+            return Collections.singletonList(tag(voucherId));
+        }
+        List<String> tags = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            tags.add(tag(voucherId, i));
+        }
+        return tags;
+    }
+
+    public static int shardOf(Long userId, int shards) {
+        return Math.floorMod(userId.hashCode(), shards);
+    }
+
+    public static String stock(String tag) {
+        return SECKILL_STOCK_KEY + tag;
+    }
+
+    public static String buyers(String tag) {
+        return SECKILL_ORDER_KEY + tag;
+    }
+
+    public static String window(String tag) {
+        return SECKILL_WINDOW_KEY + tag;
+    }
+
+    public static String stream(String tag) {
+        return SECKILL_STREAM_KEY + ":" + tag;
+    }
+
+    /**
+     * 从key中取出hash tag，如消息流 seckill:orders:{1} --> {1}
+     */
+    public static String tagOf(String key) {
+        return key.substring(key.lastIndexOf('{'));
+    }
+}
@@ -0,0 +1,285 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.IVoucherOrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_DEAD_STREAM_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STREAMS_KEY;
+
+/**
+ * ClassName: SeckillOrderConsumer
+ * Package: com.hmdp.utils
+ * Description: 秒杀订单消息流的消费者组。每个秒杀券有自己的消息流（与库存在同一个slot），登记在 seckill:streams 中；
+ * 每个消费者轮流读取各消息流，一次读取一批订单，在一个事务中批量写库，所有消息流都没有新订单时短暂休眠。
+ * 提交后才确认并删除消息；处理失败的消息留在待确认列表中，超过空闲时间后被重新认领逐条处理，
+ * 投递次数过多的转入死信流等待人工处理
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 23:00
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class SeckillOrderConsumer {
+
+    private static final String GROUP = "order-group";
+    // 重新读取消息流登记的间隔
+    private static final long STREAM_REFRESH_MILLIS = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final IVoucherOrderService voucherOrderService;
+    private final OrderTimeoutCanceller orderTimeoutCanceller;
+
+    private final int workers;
+    private final int batchSize;
+    private final long idleMillis;
+    private final long claimIdleMillis;
+    private final long maxDeliveries;
+
+    // 本节点的消费者名前缀，进程重启后是新的消费者，旧消费者的待确认消息由认领任务接管
+    private final String consumerPrefix = "consumer-" + UUID.fastUUID().toString(true).substring(0, 8);
+    private ExecutorService workerPool;
+    private volatile boolean running = true;
+    // 已登记的消息流，以及本节点已确认创建了消费者组的消息流
+    private volatile List<String> streams = Collections.emptyList();
+    private volatile long streamsLoadedAt;
+    private final Set<String> groups = ConcurrentHashMap.newKeySet();
+
+    public SeckillOrderConsumer(StringRedisTemplate stringRedisTemplate, IVoucherOrderService voucherOrderService,
+                                OrderTimeoutCanceller orderTimeoutCanceller,
+                                @Value("${hmdp.seckill.stream.workers:2}") int workers,
+                                @Value("${hmdp.seckill.stream.batch-size:100}") int batchSize,
+                                @Value("${hmdp.seckill.stream.idle-millis:100}") long idleMillis,
+                                @Value("${hmdp.seckill.stream.claim-idle-millis:60000}") long claimIdleMillis,
+                                @Value("${hmdp.seckill.stream.max-deliveries:5}") long maxDeliveries) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.voucherOrderService = voucherOrderService;
+        this.orderTimeoutCanceller = orderTimeoutCanceller;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.idleMillis = idleMillis;
+        this.claimIdleMillis = claimIdleMillis;
+        this.maxDeliveries = maxDeliveries;
+    }
+
+    @PostConstruct
+    public void start() {
+        workerPool = Executors.newFixedThreadPool(workers, new NamedThreadFactory("seckill-order-", false));
+        for (int i = 0; i < workers; i++) {
+            String consumer = consumerPrefix + "-" + i;
+            workerPool.submit(() -> consume(consumer));
+        }
+    }
+
+    /**
+     * 停止读取新消息，等待正在写库的批次完成；未完成的消息留在待确认列表中，由其他节点认领
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        workerPool.shutdown();
+        workerPool.awaitTermination(idleMillis + 10_000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 认领空闲过久的待确认消息（消费者宕机或处理失败），逐条处理，避免一条坏消息拖累整批
+     */
+    @Scheduled(fixedDelayString = "${hmdp.seckill.stream.claim-interval-millis:30000}")
+    public void reclaim() {
+        for (String stream : streams()) {
+            try {
+                reclaim(stream);
+            } catch (Exception e) {
+                log.error("认领待确认的秒杀订单失败，消息流={}", stream, e);
+            }
+        }
+    }
+
+    private void reclaim(String stream) {
+        PendingMessages pending = stringRedisTemplate.opsForStream()
+                .pending(stream, GROUP, Range.unbounded(), batchSize);
+        Map<String, Long> deliveries = new HashMap<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() >= claimIdleMillis) {
+                deliveries.put(message.getIdAsString(), message.getTotalDeliveryCount());
+            }
+        }
+        if (deliveries.isEmpty()) {
+            return;
+        }
+        for (StringRecord record : claim(stream, new ArrayList<>(deliveries.keySet()))) {
+            if (deliveries.getOrDefault(record.getId().getValue(), 0L) >= maxDeliveries) {
+                deadLetter(stream, record);
+                continue;
+            }
+            try {
+                process(stream, Collections.singletonList(record));
+            } catch (Exception e) {
+                log.error("重新处理秒杀订单失败，消息id={}", record.getId(), e);
+            }
+        }
+    }
+
+    private void consume(String consumer) {
+        int round = 0;
+        while (running) {
+            boolean idle = true;
+            try {
+                List<String> current = streams();
+                // 每轮从不同的消息流开始，订单多的消息流不会一直排在其他消息流前面
+                for (int i = 0; i < current.size() && running; i++) {
+                    String stream = current.get((round + i) % current.size());
+                    @SuppressWarnings("unchecked")
+                    List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                            Consumer.from(GROUP, consumer),
+                            StreamReadOptions.empty().count(batchSize),
+                            StreamOffset.create(stream, ReadOffset.lastConsumed()));
+                    if (records != null && !records.isEmpty()) {
+                        idle = false;
+                        process(stream, records);
+                    }
+                }
+                round++;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                // 这批消息未确认，稍后由认领任务重新处理
+                log.error("处理秒杀订单失败，消费者={}", consumer, e);
+                sleepQuietly(TimeUnit.SECONDS.toMillis(1));
+                continue;
+            }
+            if (idle) {
+                sleepQuietly(idleMillis);
+            }
+        }
+    }
+
+    /**
+     * 已登记的消息流，每秒最多重新读取一次；新出现的消息流先创建消费者组
+     */
+    private List<String> streams() {
+        long now = System.currentTimeMillis();
+        if (now - streamsLoadedAt < STREAM_REFRESH_MILLIS) {
+            return streams;
+        }
+        Set<String> members = stringRedisTemplate.opsForSet().members(SECKILL_STREAMS_KEY);
+        List<String> loaded = members == null ? Collections.emptyList() : new ArrayList<>(members);
+        for (String stream : loaded) {
+            if (!groups.contains(stream)) {
+                createGroup(stream);
+                groups.add(stream);
+            }
+        }
+        groups.retainAll(loaded);
+        streams = loaded;
+        streamsLoadedAt = now;
+        return loaded;
+    }
+
+    // 事务提交后才确认；确认前进程退出，消息会被重新投递，saveOrderBatch会跳过已保存的订单
+    private void process(String stream, List<? extends MapRecord<String, ?, ?>> records) {
+        List<VoucherOrder> orders = new ArrayList<>(records.size());
+        for (MapRecord<String, ?, ?> record : records) {
+            orders.add(BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), false));
+        }
+        List<VoucherOrder> rejected = voucherOrderService.saveOrderBatch(orders);
+        // 确认前开始支付计时；重新投递的订单会重新计时
+        if (rejected.size() < orders.size()) {
+            List<VoucherOrder> saved = new ArrayList<>(orders);
+            saved.removeAll(rejected);
+            orderTimeoutCanceller.schedule(saved);
+        }
+        ack(stream, records);
+        if (!rejected.isEmpty()) {
+            // 数据库库存不足的订单作废，只移除购买记录（写入订单所在消息流同一个tag下的key），用户可以重新下单。
+            // 不退回Redis库存：数据库拒绝说明Redis放行的数量已经超过数据库实际库存，这部分库存并不存在，
+            // 退回只会让下一个用户下单后再次作废；Redis与数据库的差异由对账发现并修正
+            log.error("数据库库存不足，{}个订单作废", rejected.size());
+            String tag = SeckillKeys.tagOf(stream);
+            String[] userIds = rejected.stream().map(order -> order.getUserId().toString()).toArray(String[]::new);
+            stringRedisTemplate.opsForSet().remove(SeckillKeys.buyers(tag), (Object[]) userIds);
+        }
+    }
+
+    // XACK和XDEL一起提交，已处理的消息不再占用内存
+    private void ack(String stream, List<? extends MapRecord<String, ?, ?>> records) {
+        String[] ids = records.stream().map(record -> record.getId().getValue()).toArray(String[]::new);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.xAck(stream, GROUP, ids);
+            stringConnection.xDel(stream, ids);
+            return null;
+        });
+    }
+
+    private List<StringRecord> claim(String stream, List<String> ids) {
+        RecordId[] recordIds = ids.stream().map(RecordId::of).toArray(RecordId[]::new);
+        List<StringRecord> records = stringRedisTemplate.execute((RedisCallback<List<StringRecord>>) connection ->
+                ((StringRedisConnection) connection).xClaim(stream, GROUP, consumerPrefix + "-reclaim",
+                        XClaimOptions.minIdle(Duration.ofMillis(claimIdleMillis)).ids(recordIds)));
+        return records == null ? Collections.emptyList() : records;
+    }
+
+    private void deadLetter(String stream, StringRecord record) {
+        log.error("秒杀订单投递{}次仍未成功，转入死信流，消息id={}，内容={}", maxDeliveries, record.getId(), record.getValue());
+        stringRedisTemplate.opsForStream().add(SECKILL_DEAD_STREAM_KEY, record.getValue());
+        ack(stream, Collections.singletonList(record));
+    }
+
+    // 从头创建消费者组，创建前已写入的订单也会被读取；消息流不存在时一并创建，组已存在时忽略
+    private void createGroup(String stream) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XGROUP",
+                    "CREATE".getBytes(), stream.getBytes(), GROUP.getBytes(), "0".getBytes(), "MKSTREAM".getBytes()));
+        } catch (RedisSystemException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
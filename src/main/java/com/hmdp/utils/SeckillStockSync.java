@@ -0,0 +1,399 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.hmdp.utils.RedisConstants.LOCK_SECKILL_PRELOAD_KEY;
+import static com.hmdp.utils.RedisConstants.LOCK_SECKILL_RECONCILE_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_DEAD_STREAM_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STREAMS_KEY;
+
+/**
+ * ClassName: SeckillStockSync
+ * Package: com.hmdp.utils
+ * Description: 秒杀库存在数据库和Redis之间的同步。
+ * 新建秒杀券时写入Redis；定时把即将开始、还没有加载的秒杀券从数据库加载到Redis（Redis数据丢失后也由此恢复）；
+ * 定时对账：数据库库存只扣减了已落库的订单，应当等于Redis库存加上消息流中还没落库的订单，
+ * 不相等时报告差异，开启修正时以数据库为准调整Redis库存，并补上数据库中有订单、Redis中缺失的购买用户。
+ * 多个节点同时运行时，预加载和对账都只有拿到锁的节点执行
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 02:00
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class SeckillStockSync {
+
+    private static final int STREAM_PAGE_SIZE = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ISeckillVoucherService seckillVoucherService;
+    private final IVoucherOrderService voucherOrderService;
+    private final ShardedStock shardedStock;
+    private final RedisLock redisLock;
+    private final long preloadLeadMillis;
+    private final boolean repair;
+    // 对账时读取数据库的只读事务，可重复读保证库存、订单数和已落库订单来自同一个读视图
+    private final TransactionTemplate dbReader;
+
+    // 最近一次对账发现的差异
+    private volatile List<Map<String, Object>> lastReport = Collections.emptyList();
+
+    public SeckillStockSync(StringRedisTemplate stringRedisTemplate, ISeckillVoucherService seckillVoucherService,
+                            IVoucherOrderService voucherOrderService, ShardedStock shardedStock, RedisLock redisLock,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${hmdp.seckill.preload.lead-millis:600000}") long preloadLeadMillis,
+                            @Value("${hmdp.seckill.reconcile.repair:false}") boolean repair) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.seckillVoucherService = seckillVoucherService;
+        this.voucherOrderService = voucherOrderService;
+        this.shardedStock = shardedStock;
+        this.redisLock = redisLock;
+        this.preloadLeadMillis = preloadLeadMillis;
+        this.repair = repair;
+        this.dbReader = new TransactionTemplate(transactionManager);
+        this.dbReader.setReadOnly(true);
+        this.dbReader.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * 把秒杀券的库存和时间窗口写入Redis，供下单时的Lua脚本判断。
+     * 时间窗口最后写入，下单脚本以时间窗口存在作为加载完成的标志；
+     * 库存已存在时不覆盖，与新建秒杀券、其他节点的加载并发时不会覆盖已经开始扣减的库存
+     * @param buyers 已购买用户id，新建的秒杀券为空
+     */
+    public void load(SeckillVoucher seckillVoucher, List<String> buyers) {
+        Long voucherId = seckillVoucher.getVoucherId();
+        Map<String, String> window = new HashMap<>();
+        window.put("begin", String.valueOf(toEpochMilli(seckillVoucher.getBeginTime())));
+        window.put("end", String.valueOf(toEpochMilli(seckillVoucher.getEndTime())));
+        // 库存达到阈值的热点券拆成多个分片，分片数记录在秒杀券的时间窗口中
+        int stock = seckillVoucher.getStock();
+        int shards = shardedStock.shardsFor(stock);
+        addBuyers(voucherId, shards, buyers);
+        // 登记订单消息流，消费者据此发现新的消息流
+        List<String> streams = new ArrayList<>();
+        SeckillKeys.tags(voucherId, shards).forEach(tag -> streams.add(SeckillKeys.stream(tag)));
+        stringRedisTemplate.opsForSet().add(SECKILL_STREAMS_KEY, streams.toArray(new String[0]));
+        String tag = SeckillKeys.tag(voucherId);
+        if (shards > 0) {
+            shardedStock.init(voucherId, stock, shards, window);
+            window.put("shards", String.valueOf(shards));
+        } else {
+            stringRedisTemplate.opsForValue().setIfAbsent(SeckillKeys.stock(tag), String.valueOf(stock));
+        }
+        stringRedisTemplate.opsForHash().putAll(SeckillKeys.window(tag), window);
+    }
+
+    /**
+     * 增加已加载的秒杀券的Redis库存，分片库存平均加到各分片
+     * @return 秒杀券没有加载到Redis时不增加，返回false，之后加载时会从数据库读取最新库存
+     */
+    public boolean addStock(Long voucherId, int count) {
+        int shards = shardedStock.shardCount(voucherId);
+        return shards > 0 ? shardedStock.add(voucherId, count, shards)
+                : shardedStock.addTo(SeckillKeys.tag(voucherId), count);
+    }
+
+    /**
+     * 预加载即将开始和正在进行、但Redis中没有的秒杀券。多个节点同时运行时只有拿到锁的节点执行
+     */
+    @Scheduled(fixedDelayString = "${hmdp.seckill.preload.interval-millis:30000}")
+    public void preload() {
+        RedisLock.Lease lease = redisLock.tryLock(LOCK_SECKILL_PRELOAD_KEY);
+        if (lease == null) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<SeckillVoucher> vouchers = seckillVoucherService.query()
+                    .le("begin_time", now.plus(Duration.ofMillis(preloadLeadMillis)))
+                    .gt("end_time", now)
+                    .list();
+            for (SeckillVoucher voucher : vouchers) {
+                if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(SeckillKeys.window(SeckillKeys.tag(voucher.getVoucherId()))))) {
+                    continue;
+                }
+                // 数据库库存已扣除落库的订单；Redis数据丢失时消息流也已丢失，没有未落库的订单
+                load(voucher, buyersOf(voucher.getVoucherId()));
+                log.info("预加载秒杀券，优惠券id={}，库存={}", voucher.getVoucherId(), voucher.getStock());
+            }
+        } finally {
+            lease.unlock();
+        }
+    }
+
+    /**
+     * 对账正在进行和刚结束的秒杀券。对账期间订单可能正在落库，
+     * 前后两次读取的Redis库存、购买用户数和未确认的订单都相同才认为数据稳定，否则本轮跳过该优惠券。
+     * 数据库在两次读取之间的同一个一致性读视图中读取；消息流中已提交落库、还没来得及确认删除的订单不再算作未落库。
+     * 多个节点同时运行时只有拿到锁的节点执行，同一个差异只修正一次
+     */
+    @Scheduled(fixedDelayString = "${hmdp.seckill.reconcile.interval-millis:60000}",
+            initialDelayString = "${hmdp.seckill.reconcile.interval-millis:60000}")
+    public void reconcile() {
+        RedisLock.Lease lease = redisLock.tryLock(LOCK_SECKILL_RECONCILE_KEY);
+        if (lease == null) {
+            return;
+        }
+        try {
+            retireStreams();
+            reconcileVouchers();
+        } finally {
+            lease.unlock();
+        }
+    }
+
+    private void reconcileVouchers() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> voucherIds = new ArrayList<>();
+        seckillVoucherService.query().select("voucher_id")
+                .le("begin_time", now.plus(Duration.ofMillis(preloadLeadMillis)))
+                .gt("end_time", now.minusDays(1))
+                .list()
+                .forEach(voucher -> voucherIds.add(voucher.getVoucherId()));
+        if (voucherIds.isEmpty()) {
+            lastReport = Collections.emptyList();
+            return;
+        }
+        // 1.Redis库存、购买用户和消息流中的订单
+        Map<Long, Snapshot> before = snapshot(voucherIds);
+        // 2.数据库库存、订单数，以及消息流中的订单哪些已经落库
+        Set<Long> pendingIds = new HashSet<>();
+        before.values().forEach(snapshot -> pendingIds.addAll(snapshot.getPendingIds()));
+        Map<Long, Integer> dbStocks = new HashMap<>();
+        Map<Long, Integer> orderCounts = new HashMap<>();
+        Set<Long> savedIds = new HashSet<>();
+        dbReader.executeWithoutResult(status -> {
+            seckillVoucherService.listByIds(voucherIds).forEach(voucher -> dbStocks.put(voucher.getVoucherId(), voucher.getStock()));
+            for (Long voucherId : before.keySet()) {
+                orderCounts.put(voucherId, voucherOrderService.query().eq("voucher_id", voucherId)
+                        .ne("status", VoucherOrder.STATUS_CANCELLED).count());
+            }
+            savedIds.addAll(savedOrders(pendingIds));
+        });
+        // 3.再读一次Redis，只对前后一致的优惠券对账
+        Map<Long, Snapshot> after = snapshot(voucherIds);
+        List<Map<String, Object>> report = new ArrayList<>();
+        for (Long voucherId : voucherIds) {
+            Snapshot snapshot = before.get(voucherId);
+            Integer dbStock = dbStocks.get(voucherId);
+            if (snapshot == null || dbStock == null || !snapshot.equals(after.get(voucherId))) {
+                continue;
+            }
+            long redisStock = snapshot.getStock(), buyers = snapshot.getBuyers();
+            long pending = snapshot.getPendingIds().stream().filter(id -> !savedIds.contains(id)).count();
+            long stockDrift = dbStock - redisStock - pending;
+            int orders = orderCounts.get(voucherId);
+            long buyerDrift = orders + pending - buyers;
+            if (stockDrift == 0 && buyerDrift == 0) {
+                continue;
+            }
+            Map<String, Object> drift = new LinkedHashMap<>();
+            drift.put("voucherId", voucherId);
+            drift.put("dbStock", dbStock);
+            drift.put("redisStock", redisStock);
+            drift.put("pendingOrders", pending);
+            drift.put("orders", orders);
+            drift.put("buyers", buyers);
+            drift.put("stockDrift", stockDrift);
+            drift.put("buyerDrift", buyerDrift);
+            drift.put("repaired", repair);
+            report.add(drift);
+            log.warn("秒杀库存不一致：{}", drift);
+            if (repair) {
+                repair(voucherId, stockDrift, buyerDrift);
+            }
+        }
+        lastReport = report;
+    }
+
+    /**
+     * 结束超过一天、消息已全部落库的秒杀券，从登记中移除其订单消息流，消费者不再读取
+     */
+    private void retireStreams() {
+        Set<String> streams = stringRedisTemplate.opsForSet().members(SECKILL_STREAMS_KEY);
+        if (streams == null || streams.isEmpty()) {
+            return;
+        }
+        Map<Long, List<String>> byVoucher = new HashMap<>();
+        for (String stream : streams) {
+            String tag = SeckillKeys.tagOf(stream);
+            String id = tag.substring(1, tag.length() - 1).split(":")[0];
+            byVoucher.computeIfAbsent(Long.valueOf(id), k -> new ArrayList<>()).add(stream);
+        }
+        LocalDateTime expired = LocalDateTime.now().minusDays(1);
+        Map<Long, LocalDateTime> endTimes = new HashMap<>();
+        seckillVoucherService.listByIds(byVoucher.keySet())
+                .forEach(voucher -> endTimes.put(voucher.getVoucherId(), voucher.getEndTime()));
+        byVoucher.forEach((voucherId, voucherStreams) -> {
+            LocalDateTime endTime = endTimes.get(voucherId);
+            if (endTime != null && endTime.isAfter(expired)) {
+                return;
+            }
+            for (String stream : voucherStreams) {
+                Long size = stringRedisTemplate.opsForStream().size(stream);
+                if (size == null || size == 0) {
+                    stringRedisTemplate.opsForSet().remove(SECKILL_STREAMS_KEY, stream);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return 本节点最近一次对账发现的差异
+     */
+    public List<Map<String, Object>> lastReport() {
+        return lastReport;
+    }
+
+    private void repair(Long voucherId, long stockDrift, long buyerDrift) {
+        // 1.以数据库为准调整Redis库存
+        int shards = shardedStock.shardCount(voucherId);
+        if (stockDrift > 0) {
+            addStock(voucherId, (int) stockDrift);
+        } else if (stockDrift < 0) {
+            if (shards > 0) {
+                shardedStock.remove(voucherId, -stockDrift, shards);
+            } else {
+                stringRedisTemplate.opsForValue().decrement(SeckillKeys.stock(SeckillKeys.tag(voucherId)), -stockDrift);
+            }
+        }
+        // 2.补上缺失的购买用户，避免重复下单；多出的购买用户可能属于正在处理的请求，不删除
+        if (buyerDrift > 0) {
+            addBuyers(voucherId, shards, buyersOf(voucherId));
+        }
+    }
+
+    // 购买用户写入其下单时路由到的集合，分片库存按用户id写入对应分片
+    private void addBuyers(Long voucherId, int shards, List<String> buyers) {
+        Map<String, List<String>> byTag = new HashMap<>();
+        for (String buyer : buyers) {
+            byTag.computeIfAbsent(SeckillKeys.tag(voucherId, Long.valueOf(buyer), shards), k -> new ArrayList<>()).add(buyer);
+        }
+        byTag.forEach((tag, members) ->
+                stringRedisTemplate.opsForSet().add(SeckillKeys.buyers(tag), members.toArray(new String[0])));
+    }
+
+    // 优惠券id --> Redis库存、购买用户数、消息流和死信流中的订单id，分片库存为各分片之和
+    private Map<Long, Snapshot> snapshot(List<Long> voucherIds) {
+        Map<Long, Snapshot> snapshot = new HashMap<>();
+        List<String> streams = new ArrayList<>();
+        for (Long voucherId : voucherIds) {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(SeckillKeys.window(SeckillKeys.tag(voucherId))))) {
+                // 还没有加载，由预加载处理
+                continue;
+            }
+            long stock = 0, buyers = 0;
+            for (String tag : SeckillKeys.tags(voucherId, shardedStock.shardCount(voucherId))) {
+                stock += parse(stringRedisTemplate.opsForValue().get(SeckillKeys.stock(tag)));
+                Long size = stringRedisTemplate.opsForSet().size(SeckillKeys.buyers(tag));
+                buyers += size == null ? 0 : size;
+                streams.add(SeckillKeys.stream(tag));
+            }
+            snapshot.put(voucherId, new Snapshot(stock, buyers, new HashSet<>()));
+        }
+        streams.add(SECKILL_DEAD_STREAM_KEY);
+        for (String stream : streams) {
+            forEachRecord(stream, record -> {
+                Object voucherId = record.getValue().get("voucherId");
+                Object orderId = record.getValue().get("id");
+                Snapshot voucher = voucherId == null ? null : snapshot.get(Long.valueOf(voucherId.toString()));
+                if (voucher != null && orderId != null) {
+                    voucher.getPendingIds().add(Long.valueOf(orderId.toString()));
+                }
+            });
+        }
+        return snapshot;
+    }
+
+    // 消息流中的订单已经写入数据库的部分：已提交，但消费者还没有确认删除消息
+    private Set<Long> savedOrders(Set<Long> orderIds) {
+        Set<Long> saved = new HashSet<>();
+        List<Long> ids = new ArrayList<>(orderIds);
+        for (int from = 0; from < ids.size(); from += STREAM_PAGE_SIZE) {
+            List<Long> page = ids.subList(from, Math.min(from + STREAM_PAGE_SIZE, ids.size()));
+            voucherOrderService.query().select("id").in("id", page).list()
+                    .forEach(order -> saved.add(order.getId()));
+        }
+        return saved;
+    }
+
+    // 分页读取消息流中的全部消息
+    private void forEachRecord(String stream, Consumer<MapRecord<String, Object, Object>> action) {
+        String lastId = null;
+        while (true) {
+            Range<String> range = lastId == null ? Range.unbounded() : Range.rightUnbounded(Range.Bound.inclusive(lastId));
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                    .range(stream, range, Limit.limit().count(STREAM_PAGE_SIZE));
+            if (records == null || records.isEmpty()) {
+                return;
+            }
+            for (MapRecord<String, Object, Object> record : records) {
+                // 分页的起点包含上一页最后一条，跳过
+                if (!record.getId().getValue().equals(lastId)) {
+                    action.accept(record);
+                }
+            }
+            String next = records.get(records.size() - 1).getId().getValue();
+            if (records.size() < STREAM_PAGE_SIZE || Objects.equals(next, lastId)) {
+                return;
+            }
+            lastId = next;
+        }
+    }
+
+    private List<String> buyersOf(Long voucherId) {
+        List<String> buyers = new ArrayList<>();
+        voucherOrderService.query().select("user_id").eq("voucher_id", voucherId)
+                .ne("status", VoucherOrder.STATUS_CANCELLED).list()
+                .forEach(order -> buyers.add(order.getUserId().toString()));
+        return buyers;
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class Snapshot {
+        private long stock;
+        private long buyers;
+        private Set<Long> pendingIds;
+    }
+
+    private static long parse(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,305 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.LOCK_SECKILL_REBALANCE_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_SHARDED_KEY;
+
+/**
+ * ClassName: ShardedStock
+ * Package: com.hmdp.utils
+ * Description: 热点秒杀券的分片库存。库存拆到N个分片上，每个分片有自己的hash tag {voucherId:shard}，
+ * 分片的库存、购买用户、时间窗口和订单消息流在同一个slot，集群模式下不同分片落在不同的slot，扣减不再集中在一个key上。
+ * 用户按id固定路由到一个分片，下单脚本在该分片内一次原子完成资格判断、扣减库存、记录购买用户和写入消息流；
+ * 同一用户总是落在同一个分片，一人一单由分片的购买用户集合保证。
+ * 用户路由到的分片空了时从其他分片借一个库存到该分片后重试，购买用户仍记录在用户的分片中，一人一单的判断不变；
+ * 定时任务在分片消耗不均、出现空分片时把库存重新平均，所有分片都空了时标记售罄，秒杀结束前每轮重新标记
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 01:10
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+public class ShardedStock {
+
+    private static final DefaultRedisScript<Long> TAKE_SCRIPT;
+    private static final DefaultRedisScript<Long> ADD_SCRIPT;
+
+    static {
+        TAKE_SCRIPT = new DefaultRedisScript<>();
+        TAKE_SCRIPT.setLocation(new ClassPathResource("lua/stock_take.lua"));
+        TAKE_SCRIPT.setResultType(Long.class);
+        ADD_SCRIPT = new DefaultRedisScript<>();
+        ADD_SCRIPT.setLocation(new ClassPathResource("lua/stock_add.lua"));
+        ADD_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisLock redisLock;
+    private final SoldOutFlags soldOutFlags;
+    private final int shards;
+    private final int minStock;
+    private final long cacheMillis;
+
+    // 优惠券id --> [分片数, 过期时间]，只缓存已加载的秒杀券
+    private final Map<Long, long[]> shardCounts = new ConcurrentHashMap<>();
+
+    public ShardedStock(StringRedisTemplate stringRedisTemplate, RedisLock redisLock, SoldOutFlags soldOutFlags,
+                        @Value("${hmdp.seckill.shard.count:1}") int shards,
+                        @Value("${hmdp.seckill.shard.min-stock:1000}") int minStock,
+                        @Value("${hmdp.seckill.shard.cache-millis:10000}") long cacheMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisLock = redisLock;
+        this.soldOutFlags = soldOutFlags;
+        this.shards = shards;
+        this.minStock = minStock;
+        this.cacheMillis = cacheMillis;
+    }
+
+    public static String shardKey(Long voucherId, int shard) {
+        return SeckillKeys.stock(SeckillKeys.tag(voucherId, shard));
+    }
+
+    /**
+     * 新建秒杀券时决定分片数
+     * @return 库存达到阈值时返回配置的分片数，不分片返回0
+     */
+    public int shardsFor(int stock) {
+        return shards > 1 && stock >= minStock ? shards : 0;
+    }
+
+    /**
+     * 查询已加载的秒杀券的分片数
+     * @return 不是分片库存返回0
+     */
+    public int shardCount(Long voucherId) {
+        Object value = stringRedisTemplate.opsForHash().get(SeckillKeys.window(SeckillKeys.tag(voucherId)), "shards");
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+
+    /**
+     * 下单时查询分片数，结果在本地缓存一段时间，省去每次下单多一次往返
+     * @return 不是分片库存或还没有加载返回0
+     */
+    public int cachedShardCount(Long voucherId) {
+        long[] cached = shardCounts.get(voucherId);
+        if (cached != null && cached[1] > System.currentTimeMillis()) {
+            return (int) cached[0];
+        }
+        // 时间窗口存在说明已加载
+        List<Object> values = stringRedisTemplate.opsForHash()
+                .multiGet(SeckillKeys.window(SeckillKeys.tag(voucherId)), Arrays.asList("begin", "shards"));
+        int count = values.get(1) == null ? 0 : Integer.parseInt(values.get(1).toString());
+        if (values.get(0) != null) {
+            shardCounts.put(voucherId, new long[]{count, System.currentTimeMillis() + cacheMillis});
+        }
+        return count;
+    }
+
+    /**
+     * 下单脚本发现库存未加载时清除缓存的分片数，秒杀券可能被重新加载
+     */
+    public void invalidate(Long voucherId) {
+        shardCounts.remove(voucherId);
+    }
+
+    /**
+     * 库存平均写入各分片，除不尽的余数放在前面的分片；每个分片复制一份时间窗口，下单脚本只访问分片内的key。
+     * 分片库存已存在时不覆盖，其他节点同时加载时不会覆盖已经开始扣减的库存
+     */
+    public void init(Long voucherId, int stock, int shards, Map<String, String> window) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (int i = 0; i < shards; i++) {
+                String tag = SeckillKeys.tag(voucherId, i);
+                stringConnection.setNX(SeckillKeys.stock(tag), String.valueOf(portion(stock, shards, i)));
+                stringConnection.hMSet(SeckillKeys.window(tag), window);
+            }
+            stringConnection.sAdd(SECKILL_SHARDED_KEY, voucherId.toString());
+            return null;
+        });
+    }
+
+    /**
+     * 补充库存，平均加到各分片；分片没有加载时不增加
+     * @return 是否增加了库存
+     */
+    public boolean add(Long voucherId, int count, int shards) {
+        boolean added = false;
+        for (int i = 0; i < shards; i++) {
+            long portion = portion(count, shards, i);
+            if (portion > 0) {
+                added |= addTo(SeckillKeys.tag(voucherId, i), portion);
+            }
+        }
+        if (added) {
+            stringRedisTemplate.opsForSet().add(SECKILL_SHARDED_KEY, voucherId.toString());
+        }
+        return added;
+    }
+
+    /**
+     * 增加一个hash tag下的库存，时间窗口或库存不存在（还没有加载）时不增加
+     * @return 是否增加了库存
+     */
+    public boolean addTo(String tag, long count) {
+        Long added = stringRedisTemplate.execute(ADD_SCRIPT,
+                Arrays.asList(SeckillKeys.window(tag), SeckillKeys.stock(tag)), String.valueOf(count));
+        return added != null && added == 1;
+    }
+
+    /**
+     * 用户路由到的分片空了时，依次从后面的分片借一个库存加到该分片，下单脚本在该分片内重试。
+     * 取走和加上之间进程退出会少卖，由对账发现
+     * @return 是否借到了库存，其他分片也都空了返回false
+     */
+    public boolean borrow(Long voucherId, int shards, int shard) {
+        for (int i = 1; i < shards; i++) {
+            if (takeFrom(voucherId, (shard + i) % shards, 1) > 0) {
+                stringRedisTemplate.opsForValue().increment(shardKey(voucherId, shard));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从各分片扣减库存，用于对账修正
+     * @return 实际扣减的数量，分片库存不够时少于count
+     */
+    public long remove(Long voucherId, long count, int shards) {
+        long removed = 0;
+        for (int i = 0; i < shards && removed < count; i++) {
+            removed += Math.max(0, takeFrom(voucherId, i, count - removed));
+        }
+        return removed;
+    }
+
+    /**
+     * 各分片的库存之和
+     */
+    public long total(Long voucherId, int shards) {
+        long total = 0;
+        for (long stock : read(voucherId, shards)) {
+            total += stock;
+        }
+        return total;
+    }
+
+    /**
+     * 平衡各分片的库存。多个节点同时运行时只有拿到锁的节点执行
+     */
+    @Scheduled(fixedDelayString = "${hmdp.seckill.shard.rebalance-millis:1000}")
+    public void rebalance() {
+        Set<String> voucherIds = stringRedisTemplate.opsForSet().members(SECKILL_SHARDED_KEY);
+        if (voucherIds == null || voucherIds.isEmpty()) {
+            return;
+        }
+        RedisLock.Lease lease = redisLock.tryLock(LOCK_SECKILL_REBALANCE_KEY);
+        if (lease == null) {
+            return;
+        }
+        try {
+            for (String voucherId : voucherIds) {
+                rebalance(Long.valueOf(voucherId));
+            }
+        } catch (Exception e) {
+            log.error("平衡分片库存失败", e);
+        } finally {
+            lease.unlock();
+        }
+    }
+
+    private void rebalance(Long voucherId) {
+        int shards = shardCount(voucherId);
+        long[] stocks = shards == 0 ? new long[0] : read(voucherId, shards);
+        long total = 0, min = Long.MAX_VALUE, max = 0;
+        for (long stock : stocks) {
+            total += stock;
+            min = Math.min(min, stock);
+            max = Math.max(max, stock);
+        }
+        // 1.所有分片都空了：秒杀结束前每轮重新标记售罄，各节点的标记不会过期，请求不再访问Redis；
+        // 已结束或不再是分片库存时不再检查，补充库存和取消订单时会重新加入
+        if (total == 0) {
+            if (shards > 0 && !ended(voucherId)) {
+                soldOutFlags.renewSoldOut(voucherId);
+            } else {
+                stringRedisTemplate.opsForSet().remove(SECKILL_SHARDED_KEY, voucherId.toString());
+            }
+            return;
+        }
+        // 2.没有空分片，或者已经尽量平均（剩下的库存不够每个分片分一个时，余数逐个分到不同分片），不需要平衡。
+        // 仍然空着的分片上的用户下单时从其他分片借库存
+        if (min > 0 || max - min <= 1) {
+            return;
+        }
+        // 3.从多的分片取走超出平均值的部分；取的时候分片可能正在被扣减，实际取到的可能更少
+        long pool = 0;
+        for (int i = 0; i < shards; i++) {
+            long excess = stocks[i] - portion(total, shards, i);
+            if (excess > 0) {
+                pool += takeFrom(voucherId, i, excess);
+            }
+        }
+        // 4.补给少的分片。取走和补上之间进程退出会少卖，由对账发现
+        for (int i = 0; i < shards && pool > 0; i++) {
+            long deficit = Math.min(portion(total, shards, i) - stocks[i], pool);
+            if (deficit > 0) {
+                stringRedisTemplate.opsForValue().increment(shardKey(voucherId, i), deficit);
+                pool -= deficit;
+            }
+        }
+        if (pool > 0) {
+            stringRedisTemplate.opsForValue().increment(shardKey(voucherId, 0), pool);
+        }
+        log.debug("平衡分片库存，优惠券id={}，总库存={}", voucherId, total);
+    }
+
+    private boolean ended(Long voucherId) {
+        Object end = stringRedisTemplate.opsForHash().get(SeckillKeys.window(SeckillKeys.tag(voucherId)), "end");
+        return end != null && Long.parseLong(end.toString()) < System.currentTimeMillis();
+    }
+
+    private long takeFrom(Long voucherId, int shard, long count) {
+        Long taken = stringRedisTemplate.execute(TAKE_SCRIPT,
+                Collections.singletonList(shardKey(voucherId, shard)), String.valueOf(count));
+        return taken == null ? 0 : taken;
+    }
+
+    private long[] read(Long voucherId, int shards) {
+        List<Object> values = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (int i = 0; i < shards; i++) {
+                stringConnection.get(shardKey(voucherId, i));
+            }
+            return null;
+        });
+        long[] stocks = new long[shards];
+        for (int i = 0; i < shards; i++) {
+            Object value = values.get(i);
+            stocks[i] = value == null ? 0 : Math.max(0, Long.parseLong(value.toString()));
+        }
+        return stocks;
+    }
+
+    private static long portion(long total, int shards, int shard) {
+        return total / shards + (shard < total % shards ? 1 : 0);
+    }
+}
@@ -0,0 +1,191 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.SHOP_GEO_KEY;
+import static com.hmdp.utils.RedisConstants.SHOP_GEO_SCROLL_KEY;
+
+/**
+ * ClassName: ShopGeoIndex
+ * Package: com.hmdp.utils
+ * Description: 按商铺类型维护Redis GEO集合 shop:geo:{typeId}，启动时从tb_shop分批加载，新增、修改商铺时同步更新。
+ * 附近商铺分页查询第一页时把按距离排好序的结果存为快照，翻页只按下标读取快照，不会重新计算前面的页
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 06:10
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+@Order(2)
+public class ShopGeoIndex implements ApplicationRunner {
+
+    // 脚本返回id与距离交替排列的列表，结果类型只能传List.class
+    @SuppressWarnings("unchecked")
+    private static final Class<List<String>> STRING_LIST = (Class<List<String>>) (Class<?>) List.class;
+    private static final DefaultRedisScript<List<String>> NEARBY_SCRIPT;
+
+    static {
+        NEARBY_SCRIPT = new DefaultRedisScript<>();
+        NEARBY_SCRIPT.setLocation(new ClassPathResource("lua/shop_nearby.lua"));
+        NEARBY_SCRIPT.setResultType(STRING_LIST);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ShopMapper shopMapper;
+    private final boolean loadOnStartup;
+    private final int chunkSize;
+    private final long radiusMeters;
+    private final int maxResults;
+    private final long snapshotTtlMillis;
+    private final double snapshotPrecision;
+
+    public ShopGeoIndex(StringRedisTemplate stringRedisTemplate, ShopMapper shopMapper,
+                        @Value("${hmdp.shop.geo.load-on-startup:true}") boolean loadOnStartup,
+                        @Value("${hmdp.shop.geo.chunk-size:1000}") int chunkSize,
+                        @Value("${hmdp.shop.geo.radius-meters:5000}") long radiusMeters,
+                        @Value("${hmdp.shop.geo.max-results:500}") int maxResults,
+                        @Value("${hmdp.shop.geo.snapshot-ttl-millis:60000}") long snapshotTtlMillis,
+                        @Value("${hmdp.shop.geo.snapshot-precision:0.0001}") double snapshotPrecision) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.shopMapper = shopMapper;
+        this.loadOnStartup = loadOnStartup;
+        this.chunkSize = chunkSize;
+        this.radiusMeters = radiusMeters;
+        this.maxResults = maxResults;
+        this.snapshotTtlMillis = snapshotTtlMillis;
+        this.snapshotPrecision = snapshotPrecision;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (loadOnStartup) {
+            load();
+        }
+    }
+
+    /**
+     * 按主键分批读取tb_shop，每批按类型分组后用管道一次写入，GEOADD重复执行不影响结果
+     * @return 加载的商铺数量
+     */
+    public long load() {
+        long start = System.currentTimeMillis();
+        long loaded = 0;
+        long lastId = 0;
+        while (true) {
+            List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>()
+                    .select("id", "type_id", "x", "y")
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("limit " + chunkSize));
+            if (shops.isEmpty()) {
+                break;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+            Map<Long, Map<String, Point>> byType = new HashMap<>();
+            for (Shop shop : shops) {
+                if (hasLocation(shop)) {
+                    byType.computeIfAbsent(shop.getTypeId(), k -> new HashMap<>())
+                            .put(shop.getId().toString(), new Point(shop.getX(), shop.getY()));
+                    loaded++;
+                }
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                byType.forEach((typeId, points) -> stringConnection.geoAdd(geoKey(typeId), points));
+                return null;
+            });
+        }
+        log.info("商铺GEO加载完成：{}条，耗时{}ms", loaded, System.currentTimeMillis() - start);
+        return loaded;
+    }
+
+    /**
+     * 写入商铺坐标，类型变化时先从原类型的集合中删除
+     * @param oldTypeId 修改前的类型，新增时为null
+     */
+    public void put(Long oldTypeId, Shop shop) {
+        String member = shop.getId().toString();
+        if (oldTypeId != null && !oldTypeId.equals(shop.getTypeId())) {
+            stringRedisTemplate.opsForGeo().remove(geoKey(oldTypeId), member);
+        }
+        if (hasLocation(shop)) {
+            stringRedisTemplate.opsForGeo().add(geoKey(shop.getTypeId()), new Point(shop.getX(), shop.getY()), member);
+        } else if (shop.getTypeId() != null) {
+            stringRedisTemplate.opsForGeo().remove(geoKey(shop.getTypeId()), member);
+        }
+    }
+
+    /**
+     * 查询(x, y)附近radius-meters以内的商铺，按距离由近到远分页，最多max-results条
+     * 坐标按snapshot-precision取整后作为快照的键，并以取整后的坐标计算距离，
+     * 同一类型、相近坐标的查询共用一个快照，有效期内翻页结果稳定
+     * @return 商铺id -> 距离(米)，按距离排序
+     */
+    public Map<Long, Double> nearby(Long typeId, double x, double y, int from, int size) {
+        if (from >= maxResults) {
+            return Collections.emptyMap();
+        }
+        int stop = Math.min(from + size, maxResults) - 1;
+        long gx = quantize(x, snapshotPrecision);
+        long gy = quantize(y, snapshotPrecision);
+        List<String> values = stringRedisTemplate.execute(NEARBY_SCRIPT,
+                Arrays.asList(geoKey(typeId), scrollKey(typeId, gx, gy)),
+                String.valueOf(gx * snapshotPrecision), String.valueOf(gy * snapshotPrecision), String.valueOf(radiusMeters), String.valueOf(maxResults),
+                String.valueOf(snapshotTtlMillis), String.valueOf(from), String.valueOf(stop));
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Double> distances = new LinkedHashMap<>(values.size());
+        for (int i = 0; i + 1 < values.size(); i += 2) {
+            distances.put(Long.valueOf(values.get(i)), Double.valueOf(values.get(i + 1)));
+        }
+        return distances;
+    }
+
+    /**
+     * 商铺类型的GEO集合 shop:geo:{typeId}，类型id作为hash tag，与该类型的快照在同一个slot
+     */
+    static String geoKey(Long typeId) {
+        return SHOP_GEO_KEY + "{" + typeId + "}";
+    }
+
+    /**
+     * 附近商铺的快照 shop:geo:scroll:{typeId}:gx:gy，集群模式下GEORADIUS STOREDIST要求源集合和快照在同一个slot
+     */
+    static String scrollKey(Long typeId, long gx, long gy) {
+        return SHOP_GEO_SCROLL_KEY + "{" + typeId + "}:" + gx + ":" + gy;
+    }
+
+    /**
+     * 把经度或纬度按precision度取整，返回格子编号
+     */
+    static long quantize(double degrees, double precision) {
+        return Math.round(degrees / precision);
+    }
+
+    private static boolean hasLocation(Shop shop) {
+        return shop.getTypeId() != null && shop.getX() != null && shop.getY() != null;
+    }
+}
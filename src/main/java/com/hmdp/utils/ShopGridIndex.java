@@ -0,0 +1,722 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SHOP_GEO_CHANNEL;
+
+/**
+ * ClassName: ShopGridIndex
+ * Package: com.hmdp.utils
+ * Description: 进程内的商铺空间索引，附近商铺查询不必每次访问Redis GEO。
+ * 每个商铺类型一个网格：按经纬度划分成cell-degrees大小的格子，商铺按所在格子排序存放在基本类型数组中，
+ * 格子的起止下标用二分查找定位。查询时只计算覆盖查询范围的格子中的商铺，k近邻查询从一个格子的范围开始逐步扩大半径。
+ * 网格不可变，商铺新增、修改时按id索引找到下标，复制数组时插入或删除该商铺得到新网格后替换，读取不加锁；
+ * 变更通过Redis广播到其他节点，并定期从数据库重新加载，补上丢失的广播。
+ * 附近商铺分页与Redis GEO一样使用快照，第一页算出全部结果，翻页只按下标截取
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 06:50
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+@Order(3)
+public class ShopGridIndex implements ApplicationRunner {
+
+    // 与Redis GEO相同的地球半径，两种方式计算出的距离一致
+    private static final double EARTH_RADIUS_METERS = 6372797.560856;
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ShopMapper shopMapper;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final double cellDegrees;
+    private final double radiusMeters;
+    private final int maxResults;
+    private final double snapshotPrecision;
+
+    // 商铺类型 --> 网格
+    private final Map<Long, Grid> grids = new ConcurrentHashMap<>();
+    // 类型:取整后的坐标 --> 按距离排好序的附近商铺
+    private final LRUCache<String, Snapshot> snapshots;
+    // 加载期间收到的变更，加载完成后按顺序重放，避免被加载时读到的旧数据覆盖
+    private final List<String> pending = new ArrayList<>();
+    private boolean loading;
+    private volatile boolean ready;
+
+    public ShopGridIndex(StringRedisTemplate stringRedisTemplate, ShopMapper shopMapper,
+                         @Value("${hmdp.shop.geo.local-index.enabled:true}") boolean enabled,
+                         @Value("${hmdp.shop.geo.chunk-size:1000}") int chunkSize,
+                         @Value("${hmdp.shop.geo.local-index.cell-degrees:0.01}") double cellDegrees,
+                         @Value("${hmdp.shop.geo.radius-meters:5000}") double radiusMeters,
+                         @Value("${hmdp.shop.geo.max-results:500}") int maxResults,
+                         @Value("${hmdp.shop.geo.snapshot-ttl-millis:60000}") long snapshotTtlMillis,
+                         @Value("${hmdp.shop.geo.snapshot-precision:0.0001}") double snapshotPrecision,
+                         @Value("${hmdp.shop.geo.local-index.snapshot-capacity:1000}") int snapshotCapacity) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.shopMapper = shopMapper;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.cellDegrees = cellDegrees;
+        this.radiusMeters = radiusMeters;
+        this.maxResults = maxResults;
+        this.snapshotPrecision = snapshotPrecision;
+        this.snapshots = CacheUtil.newLRUCache(snapshotCapacity, snapshotTtlMillis);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            load();
+        }
+    }
+
+    /**
+     * 加载完成后才使用本地索引，之前的查询仍走Redis GEO
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 定期全量重新加载，其他节点的变更广播丢失时，最多一个周期后恢复一致；上次加载失败时也会重试
+     */
+    @Scheduled(initialDelayString = "${hmdp.shop.geo.local-index.reload-millis:600000}",
+            fixedDelayString = "${hmdp.shop.geo.local-index.reload-millis:600000}")
+    public void reload() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    /**
+     * 按主键分批读取tb_shop的id、类型和坐标，按类型建立网格。加载期间查询仍使用原来的网格
+     */
+    public void load() {
+        synchronized (this) {
+            if (loading) {
+                return;
+            }
+            loading = true;
+        }
+        long start = System.currentTimeMillis();
+        Map<Long, Points> byType = new HashMap<>();
+        try {
+            long lastId = 0;
+            while (true) {
+                List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>()
+                        .select("id", "type_id", "x", "y")
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("limit " + chunkSize));
+                if (shops.isEmpty()) {
+                    break;
+                }
+                lastId = shops.get(shops.size() - 1).getId();
+                for (Shop shop : shops) {
+                    if (shop.getTypeId() != null && shop.getX() != null && shop.getY() != null) {
+                        byType.computeIfAbsent(shop.getTypeId(), k -> new Points(chunkSize))
+                                .add(shop.getId(), shop.getX(), shop.getY());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 加载失败时不启用本地索引，附近商铺查询继续使用Redis GEO
+            log.error("商铺网格索引加载失败", e);
+            synchronized (this) {
+                pending.clear();
+                loading = false;
+            }
+            return;
+        }
+        Map<Long, Grid> loaded = new HashMap<>(byType.size() * 2);
+        byType.forEach((typeId, points) -> loaded.put(typeId, build(points)));
+        install(loaded);
+        log.info("商铺网格索引加载完成：{}个类型，{}家商铺，{}个格子，约{}KB，耗时{}ms",
+                grids.size(), size(), cells(), bytes() / 1024, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 替换全部网格并重放加载期间的变更，逐个类型替换，查询不会看到空的网格
+     */
+    synchronized void install(Map<Long, Grid> loaded) {
+        grids.keySet().retainAll(loaded.keySet());
+        grids.putAll(loaded);
+        for (String message : pending) {
+            apply(message);
+        }
+        pending.clear();
+        loading = false;
+        ready = true;
+    }
+
+    /**
+     * 新增、修改商铺后更新本节点的网格，并广播给其他节点
+     */
+    public void put(Shop shop) {
+        String message = shop.getTypeId() != null && shop.getX() != null && shop.getY() != null
+                ? shop.getId() + ":" + shop.getTypeId() + ":" + shop.getX() + ":" + shop.getY()
+                : shop.getId().toString();
+        onMessage(message);
+        stringRedisTemplate.convertAndSend(SHOP_GEO_CHANNEL, message);
+    }
+
+    /**
+     * 收到广播，消息格式 shopId:typeId:x:y，只有shopId表示商铺已没有坐标，从网格中删除。
+     * 本节点发出的消息也会收到，坐标没有变化时不重建网格
+     */
+    public synchronized void onMessage(String message) {
+        if (loading) {
+            pending.add(message);
+            return;
+        }
+        apply(message);
+    }
+
+    private void apply(String message) {
+        String[] parts = message.split(":");
+        long id = Long.parseLong(parts[0]);
+        Long typeId = parts.length == 4 ? Long.valueOf(parts[1]) : null;
+        // 从其他类型的网格中删除，每个网格按id索引二分查找，类型数很少
+        for (Map.Entry<Long, Grid> entry : grids.entrySet()) {
+            if (!entry.getKey().equals(typeId) && entry.getValue().indexOf(id) >= 0) {
+                replace(entry.getKey(), entry.getValue().without(id));
+            }
+        }
+        if (typeId == null) {
+            return;
+        }
+        double x = Double.parseDouble(parts[2]);
+        double y = Double.parseDouble(parts[3]);
+        Grid grid = grids.get(typeId);
+        if (grid == null) {
+            Points points = new Points(1);
+            points.add(id, x, y);
+            grids.put(typeId, build(points));
+            return;
+        }
+        int index = grid.indexOf(id);
+        if (index >= 0) {
+            if (grid.xs[index] == x && grid.ys[index] == y) {
+                return;
+            }
+            grid = grid.without(id);
+        }
+        if (grid == null) {
+            Points points = new Points(1);
+            points.add(id, x, y);
+            grids.put(typeId, build(points));
+        } else {
+            grids.put(typeId, grid.with(id, x, y));
+        }
+    }
+
+    private void replace(Long typeId, Grid grid) {
+        if (grid == null) {
+            grids.remove(typeId);
+        } else {
+            grids.put(typeId, grid);
+        }
+    }
+
+    /**
+     * 附近商铺分页，与Redis GEO的方式相同：radius-meters以内，按距离由近到远，最多max-results条。
+     * 坐标按snapshot-precision取整，同一类型、相近坐标的查询共用一个快照，有效期内翻页结果稳定
+     * @return 商铺id -> 距离(米)，按距离排序
+     */
+    public Map<Long, Double> nearby(Long typeId, double x, double y, int from, int size) {
+        if (from >= maxResults) {
+            return Collections.emptyMap();
+        }
+        long gx = ShopGeoIndex.quantize(x, snapshotPrecision);
+        long gy = ShopGeoIndex.quantize(y, snapshotPrecision);
+        // 不刷新访问时间，快照从创建起计算有效期
+        Snapshot snapshot = snapshots.get(typeId + ":" + gx + ":" + gy, false, () -> {
+            Grid grid = grids.get(typeId);
+            return grid == null ? Snapshot.EMPTY
+                    : grid.nearest(gx * snapshotPrecision, gy * snapshotPrecision, maxResults, radiusMeters).toSnapshot();
+        });
+        return snapshot.page(from, size);
+    }
+
+    /**
+     * 距离(x, y)最近的k家商铺
+     * @param maxMeters 只返回该距离以内的商铺，不限制时传 Double.POSITIVE_INFINITY
+     * @return 商铺id -> 距离(米)，按距离排序
+     */
+    public Map<Long, Double> nearest(Long typeId, double x, double y, int k, double maxMeters) {
+        Grid grid = grids.get(typeId);
+        if (grid == null || k <= 0) {
+            return Collections.emptyMap();
+        }
+        return grid.nearest(x, y, k, maxMeters).toSortedMap();
+    }
+
+    /**
+     * (x, y)周围meters以内的商铺，最多limit家
+     * @return 商铺id -> 距离(米)，按距离排序
+     */
+    public Map<Long, Double> radius(Long typeId, double x, double y, double meters, int limit) {
+        Grid grid = grids.get(typeId);
+        if (grid == null || limit <= 0) {
+            return Collections.emptyMap();
+        }
+        Heap heap = new Heap(Math.min(limit, grid.ids.length));
+        grid.scan(x, y, meters, heap);
+        return heap.toSortedMap();
+    }
+
+    public int size() {
+        return grids.values().stream().mapToInt(grid -> grid.ids.length).sum();
+    }
+
+    public int cells() {
+        return grids.values().stream().mapToInt(grid -> grid.cellKeys.length).sum();
+    }
+
+    /**
+     * 数组占用的内存估计：每家商铺id、经度、纬度24字节，id索引12字节，每个格子的键和起始下标12字节
+     */
+    public long bytes() {
+        return grids.values().stream().mapToLong(grid -> grid.ids.length * 36L + grid.cellKeys.length * 12L).sum();
+    }
+
+    static double distance(double x1, double y1, double x2, double y2) {
+        double lat1 = Math.toRadians(y1);
+        double lat2 = Math.toRadians(y2);
+        double u = Math.sin((lat2 - lat1) / 2);
+        double v = Math.sin(Math.toRadians(x2 - x1) / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(u * u + Math.cos(lat1) * Math.cos(lat2) * v * v));
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    // 高32位为经度方向的格子号，低32位为纬度方向的格子号（翻转符号位），键的大小顺序与(cx, cy)的顺序一致
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | ((cy ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    /**
+     * 按格子排序存放一个类型的商铺
+     */
+    Grid build(Points points) {
+        int n = points.size;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = cellKey(cell(points.xs[i]), cell(points.ys[i]));
+        }
+        long[] sorted = Arrays.copyOf(keys, n);
+        Arrays.sort(sorted);
+        int cells = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[cells++] = sorted[i];
+            }
+        }
+        long[] cellKeys = Arrays.copyOf(sorted, cells);
+        // 计数排序：先统计每个格子的商铺数，再按前缀和放到各自的位置
+        int[] starts = new int[cells + 1];
+        int[] cellOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = Arrays.binarySearch(cellKeys, keys[i]);
+            starts[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            starts[c + 1] += starts[c];
+        }
+        int[] next = Arrays.copyOf(starts, cells);
+        long[] ids = new long[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            int p = next[cellOf[i]]++;
+            ids[p] = points.ids[i];
+            xs[p] = points.xs[i];
+            ys[p] = points.ys[i];
+        }
+        // id索引：按id排序，offsets为对应商铺在ids中的下标
+        long[] sortedIds = Arrays.copyOf(ids, n);
+        Arrays.sort(sortedIds);
+        int[] offsets = new int[n];
+        for (int p = 0; p < n; p++) {
+            offsets[Arrays.binarySearch(sortedIds, ids[p])] = p;
+        }
+        return new Grid(cellKeys, starts, ids, xs, ys, sortedIds, offsets);
+    }
+
+    final class Grid {
+        final long[] cellKeys;
+        // 第c个格子的商铺在ids中的下标范围为 [cellStarts[c], cellStarts[c + 1])
+        final int[] cellStarts;
+        final long[] ids;
+        final double[] xs;
+        final double[] ys;
+        // 按id排序的商铺id，及其在ids中的下标
+        final long[] sortedIds;
+        final int[] offsets;
+        final double minX, maxX, minY, maxY;
+
+        Grid(long[] cellKeys, int[] cellStarts, long[] ids, double[] xs, double[] ys, long[] sortedIds, int[] offsets) {
+            this.cellKeys = cellKeys;
+            this.cellStarts = cellStarts;
+            this.ids = ids;
+            this.xs = xs;
+            this.ys = ys;
+            this.sortedIds = sortedIds;
+            this.offsets = offsets;
+            double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int i = 0; i < ids.length; i++) {
+                minX = Math.min(minX, xs[i]);
+                maxX = Math.max(maxX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        /**
+         * 距离(x, y)最近的k家商铺，放在由近到远取出的堆中
+         */
+        Heap nearest(double x, double y, int k, double maxMeters) {
+            Heap heap = new Heap(Math.min(k, ids.length));
+            // 从一个格子的范围开始，找不够k家就把半径加倍，直到覆盖整个网格或达到maxMeters
+            double radius = Math.min(cellDegrees * METERS_PER_DEGREE, maxMeters);
+            while (true) {
+                heap.clear();
+                boolean coversAll = scan(x, y, radius, heap);
+                if (heap.size == heap.capacity || radius >= maxMeters) {
+                    return heap;
+                }
+                radius = coversAll ? maxMeters : Math.min(radius * 2, maxMeters);
+            }
+        }
+
+        /**
+         * 计算覆盖以(x, y)为圆心、meters为半径的圆的格子中的商铺，距离不超过meters的放入堆
+         * @return 查询范围是否已覆盖整个网格
+         */
+        boolean scan(double x, double y, double meters, Heap heap) {
+            double dy = meters / METERS_PER_DEGREE;
+            // 纬度越高，一度经度对应的距离越短，按范围内纬度绝对值最大处计算
+            double maxLat = Math.abs(y) + dy;
+            double dx = maxLat >= 90 ? 360 : dy / Math.cos(Math.toRadians(maxLat));
+            double left = Math.max(x - dx, minX), right = Math.min(x + dx, maxX);
+            double bottom = Math.max(y - dy, minY), top = Math.min(y + dy, maxY);
+            boolean coversAll = x - dx <= minX && x + dx >= maxX && y - dy <= minY && y + dy >= maxY;
+            if (left > right || bottom > top) {
+                return coversAll;
+            }
+            int cyFrom = cell(bottom), cyTo = cell(top);
+            for (int cx = cell(left), cxTo = cell(right); cx <= cxTo; cx++) {
+                // 同一列的格子在cellKeys中是连续的，二分找到第一个后顺序向后读
+                int c = Arrays.binarySearch(cellKeys, cellKey(cx, cyFrom));
+                if (c < 0) {
+                    c = -c - 1;
+                }
+                long last = cellKey(cx, cyTo);
+                for (; c < cellKeys.length && cellKeys[c] <= last; c++) {
+                    for (int i = cellStarts[c]; i < cellStarts[c + 1]; i++) {
+                        double d = distance(x, y, xs[i], ys[i]);
+                        if (d <= meters) {
+                            heap.offer(ids[i], d);
+                        }
+                    }
+                }
+            }
+            return coversAll;
+        }
+
+        int indexOf(long id) {
+            int j = Arrays.binarySearch(sortedIds, id);
+            return j < 0 ? -1 : offsets[j];
+        }
+
+        /**
+         * 插入一家网格中没有的商铺：放在所在格子的末尾，之后格子的起始下标加一，格子不存在时新建
+         */
+        Grid with(long id, double x, double y) {
+            long key = cellKey(cell(x), cell(y));
+            int c = Arrays.binarySearch(cellKeys, key);
+            long[] keys;
+            int[] starts;
+            int p;
+            if (c >= 0) {
+                p = cellStarts[c + 1];
+                keys = cellKeys;
+                starts = Arrays.copyOf(cellStarts, cellStarts.length);
+                for (int k = c + 1; k < starts.length; k++) {
+                    starts[k]++;
+                }
+            } else {
+                c = -c - 1;
+                p = cellStarts[c];
+                keys = insert(cellKeys, c, key);
+                starts = new int[cellStarts.length + 1];
+                System.arraycopy(cellStarts, 0, starts, 0, c + 1);
+                for (int k = c + 1; k < starts.length; k++) {
+                    starts[k] = cellStarts[k - 1] + 1;
+                }
+            }
+            int j = -Arrays.binarySearch(sortedIds, id) - 1;
+            int[] newOffsets = new int[offsets.length + 1];
+            for (int i = 0, k = 0; i < newOffsets.length; i++) {
+                if (i == j) {
+                    newOffsets[i] = p;
+                } else {
+                    int offset = offsets[k++];
+                    newOffsets[i] = offset >= p ? offset + 1 : offset;
+                }
+            }
+            return new Grid(keys, starts, insert(ids, p, id), insert(xs, p, x), insert(ys, p, y),
+                    insert(sortedIds, j, id), newOffsets);
+        }
+
+        /**
+         * 删除一家商铺：之后格子的起始下标减一，格子变空时一并删除
+         * @return 新网格，删除后没有商铺时返回null
+         */
+        Grid without(long id) {
+            int p = indexOf(id);
+            if (p < 0) {
+                return this;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+            int c = Arrays.binarySearch(cellKeys, cellKey(cell(xs[p]), cell(ys[p])));
+            long[] keys;
+            int[] starts;
+            if (cellStarts[c + 1] - cellStarts[c] == 1) {
+                keys = remove(cellKeys, c);
+                starts = new int[cellStarts.length - 1];
+                System.arraycopy(cellStarts, 0, starts, 0, c + 1);
+                for (int k = c + 1; k < starts.length; k++) {
+                    starts[k] = cellStarts[k + 1] - 1;
+                }
+            } else {
+                keys = cellKeys;
+                starts = Arrays.copyOf(cellStarts, cellStarts.length);
+                for (int k = c + 1; k < starts.length; k++) {
+                    starts[k]--;
+                }
+            }
+            int j = Arrays.binarySearch(sortedIds, id);
+            int[] newOffsets = new int[offsets.length - 1];
+            for (int i = 0, k = 0; i < offsets.length; i++) {
+                if (i != j) {
+                    newOffsets[k++] = offsets[i] > p ? offsets[i] - 1 : offsets[i];
+                }
+            }
+            return new Grid(keys, starts, remove(ids, p), remove(xs, p), remove(ys, p),
+                    remove(sortedIds, j), newOffsets);
+        }
+    }
+
+    private static long[] insert(long[] array, int index, long value) {
+        long[] result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static double[] insert(double[] array, int index, double value) {
+        double[] result = new double[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static long[] remove(long[] array, int index) {
+        long[] result = new long[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private static double[] remove(double[] array, int index) {
+        double[] result = new double[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    /**
+     * 附近商铺的分页快照，按距离由近到远排列
+     */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new long[0], new double[0]);
+
+        final long[] ids;
+        final double[] distances;
+
+        Snapshot(long[] ids, double[] distances) {
+            this.ids = ids;
+            this.distances = distances;
+        }
+
+        /**
+         * @return 商铺id -> 距离(米)，按距离排序
+         */
+        Map<Long, Double> page(int from, int size) {
+            int to = Math.min(from + size, ids.length);
+            if (from >= to) {
+                return Collections.emptyMap();
+            }
+            Map<Long, Double> result = new LinkedHashMap<>((to - from) * 2);
+            for (int i = from; i < to; i++) {
+                result.put(ids[i], distances[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 可增长的商铺坐标数组
+     */
+    static final class Points {
+        long[] ids;
+        double[] xs;
+        double[] ys;
+        int size;
+
+        Points(int capacity) {
+            capacity = Math.max(capacity, 1);
+            ids = new long[capacity];
+            xs = new double[capacity];
+            ys = new double[capacity];
+        }
+
+        void add(long id, double x, double y) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+            }
+            ids[size] = id;
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
+    }
+
+    /**
+     * 容量固定的大顶堆，保留距离最小的capacity家商铺
+     */
+    static final class Heap {
+        final int capacity;
+        final long[] ids;
+        final double[] distances;
+        int size;
+
+        Heap(int capacity) {
+            this.capacity = capacity;
+            this.ids = new long[capacity];
+            this.distances = new double[capacity];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void offer(long id, double distance) {
+            if (size < capacity) {
+                ids[size] = id;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (capacity > 0 && distance < distances[0]) {
+                ids[0] = id;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        Map<Long, Double> toSortedMap() {
+            return toSnapshot().page(0, capacity);
+        }
+
+        /**
+         * 依次取出堆顶，从后往前填，得到由近到远的顺序
+         */
+        Snapshot toSnapshot() {
+            int n = size;
+            long[] sortedIds = new long[n];
+            double[] sortedDistances = new double[n];
+            for (int i = n - 1; i >= 0; i--) {
+                sortedIds[i] = ids[0];
+                sortedDistances[i] = distances[0];
+                size--;
+                ids[0] = ids[size];
+                distances[0] = distances[size];
+                siftDown(0);
+            }
+            return new Snapshot(sortedIds, sortedDistances);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i]) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i, left = 2 * i + 1, right = left + 1;
+                if (left < size && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (right < size && distances[right] > distances[largest]) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            double distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+        }
+    }
+}
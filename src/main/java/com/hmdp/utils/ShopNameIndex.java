@@ -0,0 +1,575 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import static com.hmdp.utils.RedisConstants.SHOP_NAME_CHANNEL;
+
+/**
+ * ClassName: ShopNameIndex
+ * Package: com.hmdp.utils
+ * Description: 商铺名称、商圈的进程内倒排索引，代替 like '%name%' 全表扫描。
+ * 中文没有分词边界，按字切分：每个字和相邻两个字各作为一个词项，倒排表是按文档序号排序的int数组。
+ * 查询时求关键字中所有二元词项倒排表的交集，再用原文确认确实包含关键字；名称以关键字开头的排在前面，其次是名称包含、商圈包含。
+ * 启动时建立的主索引不可变，新增、修改的商铺放入增量表并在主索引中标记删除，增量达到merge-threshold后在后台合并成新的主索引；
+ * 变更通过Redis广播到其他节点，并定期从数据库重新建立主索引，补上丢失的广播
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 07:40
+ * @Version 1.0
+ */
+@Slf4j
+@Component
+@Order(4)
+public class ShopNameIndex implements ApplicationRunner {
+
+    private static final String INDEX_NAME = "shop-name";
+    // 匹配的排序：名称前缀、名称包含、商圈包含
+    private static final int NAME_PREFIX = 0;
+    private static final int NAME_CONTAINS = 1;
+    private static final int AREA_CONTAINS = 2;
+    private static final int NO_MATCH = -1;
+    private static final long BIGRAM = 1L << 42;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ShopMapper shopMapper;
+    private final Timer timer;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int mergeThreshold;
+    private final ExecutorService merger = Executors.newSingleThreadExecutor(new NamedThreadFactory("shop-name-merge-", true));
+
+    private volatile State state = new State(Segment.EMPTY, new BitSet(), Collections.emptyMap());
+    // 加载、合并期间收到的变更，新的主索引建好后重放
+    private final List<Shop> pending = new ArrayList<>();
+    private boolean rebuilding;
+    private volatile boolean ready;
+
+    public ShopNameIndex(StringRedisTemplate stringRedisTemplate, ShopMapper shopMapper, CacheMetrics metrics,
+                         @Value("${hmdp.shop.search.enabled:true}") boolean enabled,
+                         @Value("${hmdp.shop.search.chunk-size:1000}") int chunkSize,
+                         @Value("${hmdp.shop.search.merge-threshold:1000}") int mergeThreshold) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.shopMapper = shopMapper;
+        this.timer = metrics.searchTimer(INDEX_NAME);
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.mergeThreshold = mergeThreshold;
+        metrics.indexBytes(INDEX_NAME, this, ShopNameIndex::bytes);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            load();
+        }
+    }
+
+    /**
+     * 加载完成后才使用索引，之前的查询仍走数据库
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 定期全量重新加载，其他节点的变更广播丢失时，最多一个周期后恢复一致；上次加载失败时也会重试
+     */
+    @Scheduled(initialDelayString = "${hmdp.shop.search.reload-millis:600000}",
+            fixedDelayString = "${hmdp.shop.search.reload-millis:600000}")
+    public void reload() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    /**
+     * 按主键分批读取tb_shop的id、名称、商圈，建立主索引。正在加载或合并时跳过，建立期间查询仍使用原来的索引
+     */
+    public void load() {
+        synchronized (this) {
+            if (rebuilding) {
+                return;
+            }
+            rebuilding = true;
+        }
+        long start = System.currentTimeMillis();
+        Docs docs = new Docs(chunkSize);
+        try {
+            long lastId = 0;
+            while (true) {
+                List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>()
+                        .select("id", "name", "area")
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("limit " + chunkSize));
+                if (shops.isEmpty()) {
+                    break;
+                }
+                lastId = shops.get(shops.size() - 1).getId();
+                for (Shop shop : shops) {
+                    docs.add(shop.getId(), normalize(shop.getName()), normalize(shop.getArea()));
+                }
+            }
+        } catch (Exception e) {
+            // 加载失败时不启用索引，名称查询继续使用数据库
+            log.error("商铺名称索引加载失败", e);
+            synchronized (this) {
+                pending.clear();
+                rebuilding = false;
+            }
+            return;
+        }
+        install(Segment.build(docs));
+        ready = true;
+        log.info("商铺名称索引加载完成：{}家商铺，{}个词项，约{}KB，耗时{}ms",
+                docs.size, state.base.postings.size(), bytes() / 1024, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 新增、修改商铺后更新本节点的索引，并广播给其他节点
+     */
+    public void put(Shop shop) {
+        Shop doc = new Shop().setId(shop.getId()).setName(shop.getName()).setArea(shop.getArea());
+        onMessage(doc);
+        stringRedisTemplate.convertAndSend(SHOP_NAME_CHANNEL, JSONUtil.toJsonStr(doc));
+    }
+
+    /**
+     * 收到广播，消息为只包含id、name、area的商铺JSON
+     */
+    public void onMessage(String message) {
+        onMessage(JSONUtil.toBean(message, Shop.class));
+    }
+
+    synchronized void onMessage(Shop shop) {
+        if (rebuilding) {
+            pending.add(shop);
+        }
+        state = apply(state, shop);
+        if (!rebuilding && state.changes() >= mergeThreshold) {
+            rebuilding = true;
+            State snapshot = state;
+            merger.submit(() -> merge(snapshot));
+        }
+    }
+
+    /**
+     * 写入增量表，主索引中的旧版本标记删除；名称为空表示商铺已删除。本节点发出的消息也会收到，内容没有变化时跳过
+     * @return 修改后的新状态，原状态不变
+     */
+    private static State apply(State current, Shop shop) {
+        long id = shop.getId();
+        String name = normalize(shop.getName());
+        String area = normalize(shop.getArea());
+        String[] doc = current.get(id);
+        if (doc == null ? name.isEmpty() : doc[0].equals(name) && doc[1].equals(area)) {
+            return current;
+        }
+        BitSet deleted = current.deleted;
+        int ord = Arrays.binarySearch(current.base.ids, id);
+        if (ord >= 0 && !deleted.get(ord)) {
+            deleted = (BitSet) deleted.clone();
+            deleted.set(ord);
+        }
+        Map<Long, String[]> delta = new HashMap<>(current.delta);
+        if (name.isEmpty()) {
+            delta.remove(id);
+        } else {
+            delta.put(id, new String[]{name, area});
+        }
+        return new State(current.base, deleted, delta);
+    }
+
+    /**
+     * 把主索引中未删除的商铺和增量表合并成新的主索引
+     */
+    private void merge(State snapshot) {
+        try {
+            Map<Long, String[]> merged = new HashMap<>(snapshot.base.ids.length + snapshot.delta.size());
+            Segment base = snapshot.base;
+            for (int ord = 0; ord < base.ids.length; ord++) {
+                if (!snapshot.deleted.get(ord)) {
+                    merged.put(base.ids[ord], new String[]{base.names[ord], base.areas[ord]});
+                }
+            }
+            merged.putAll(snapshot.delta);
+            Long[] ids = merged.keySet().toArray(new Long[0]);
+            Arrays.sort(ids);
+            Docs docs = new Docs(ids.length);
+            for (Long id : ids) {
+                String[] doc = merged.get(id);
+                docs.add(id, doc[0], doc[1]);
+            }
+            install(Segment.build(docs));
+        } catch (Exception e) {
+            log.error("商铺名称索引合并失败", e);
+            synchronized (this) {
+                pending.clear();
+                rebuilding = false;
+            }
+        }
+    }
+
+    /**
+     * 换上新的主索引，重放建立期间收到的变更。重放完成后才替换，查询不会看到缺少这些变更的中间状态
+     */
+    synchronized void install(Segment base) {
+        State installed = new State(base, new BitSet(), Collections.emptyMap());
+        for (Shop shop : pending) {
+            installed = apply(installed, shop);
+        }
+        state = installed;
+        pending.clear();
+        rebuilding = false;
+    }
+
+    /**
+     * 按名称或商圈搜索商铺，名称以关键字开头的排在最前，同一类按id排序
+     * @param keyword 关键字，忽略大小写、全角半角和空白
+     * @return 本页的商铺id
+     */
+    public List<Long> search(String keyword, int from, int size) {
+        long start = System.nanoTime();
+        try {
+            String query = normalize(keyword);
+            if (query.isEmpty()) {
+                return Collections.emptyList();
+            }
+            State current = state;
+            Segment base = current.base;
+            // 高4位为匹配类型，低60位为商铺id，排序后即为结果顺序
+            long[] matches = new long[16];
+            int count = 0;
+            int[] candidates = base.candidates(query);
+            for (int ord : candidates) {
+                if (current.deleted.get(ord)) {
+                    continue;
+                }
+                int rank = rank(base.names[ord], base.areas[ord], query);
+                if (rank != NO_MATCH) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = (long) rank << 60 | base.ids[ord];
+                }
+            }
+            for (Map.Entry<Long, String[]> entry : current.delta.entrySet()) {
+                int rank = rank(entry.getValue()[0], entry.getValue()[1], query);
+                if (rank != NO_MATCH) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = (long) rank << 60 | entry.getKey();
+                }
+            }
+            if (from >= count) {
+                return Collections.emptyList();
+            }
+            Arrays.sort(matches, 0, count);
+            int to = Math.min(count, from + size);
+            List<Long> ids = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                ids.add(matches[i] & ((1L << 60) - 1));
+            }
+            return ids;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 文档数、词项数、内存估计和查询耗时
+     */
+    public Map<String, Object> stats() {
+        State current = state;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("docs", current.base.ids.length - current.deleted.cardinality() + current.delta.size());
+        stats.put("baseDocs", current.base.ids.length);
+        stats.put("deltaDocs", current.delta.size());
+        stats.put("deletedDocs", current.deleted.cardinality());
+        stats.put("terms", current.base.postings.size());
+        stats.put("postings", current.base.postingCount);
+        stats.put("bytes", bytes());
+        stats.put("queries", timer.count());
+        stats.put("meanMicros", timer.mean(TimeUnit.MICROSECONDS));
+        stats.put("maxMicros", timer.max(TimeUnit.MICROSECONDS));
+        return stats;
+    }
+
+    /**
+     * 内存占用估计：主索引加增量表，字符串按对象头加每字符2字节计算
+     */
+    public long bytes() {
+        State current = state;
+        long bytes = current.base.bytes + current.deleted.size() / 8;
+        for (String[] doc : current.delta.values()) {
+            bytes += 96 + stringBytes(doc[0]) + stringBytes(doc[1]);
+        }
+        return bytes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        merger.shutdownNow();
+    }
+
+    // 全角转半角、转小写、去掉空白
+    static String normalize(String text) {
+        return text == null ? "" : StrUtil.cleanBlank(Convert.toDBC(text)).toLowerCase(Locale.ROOT);
+    }
+
+    private static int rank(String name, String area, String query) {
+        if (name.startsWith(query)) {
+            return NAME_PREFIX;
+        }
+        if (name.contains(query)) {
+            return NAME_CONTAINS;
+        }
+        return area.contains(query) ? AREA_CONTAINS : NO_MATCH;
+    }
+
+    private static long stringBytes(String s) {
+        return 40 + 2L * s.length();
+    }
+
+    private static final class State {
+        final Segment base;
+        // 主索引中已被替换或删除的文档序号
+        final BitSet deleted;
+        // 商铺id --> {名称, 商圈}，覆盖主索引中的版本
+        final Map<Long, String[]> delta;
+
+        State(Segment base, BitSet deleted, Map<Long, String[]> delta) {
+            this.base = base;
+            this.deleted = deleted;
+            this.delta = delta;
+        }
+
+        int changes() {
+            return delta.size() + deleted.cardinality();
+        }
+
+        String[] get(long id) {
+            String[] doc = delta.get(id);
+            if (doc != null) {
+                return doc;
+            }
+            int ord = Arrays.binarySearch(base.ids, id);
+            return ord >= 0 && !deleted.get(ord) ? new String[]{base.names[ord], base.areas[ord]} : null;
+        }
+    }
+
+    /**
+     * 按id排序的文档，构建主索引的输入
+     */
+    static final class Docs {
+        long[] ids;
+        String[] names;
+        String[] areas;
+        int size;
+
+        Docs(int capacity) {
+            capacity = Math.max(capacity, 1);
+            ids = new long[capacity];
+            names = new String[capacity];
+            areas = new String[capacity];
+        }
+
+        void add(long id, String name, String area) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+                areas = Arrays.copyOf(areas, size * 2);
+            }
+            ids[size] = id;
+            names[size] = name;
+            areas[size] = area;
+            size++;
+        }
+    }
+
+    /**
+     * 不可变的主索引，文档序号即在ids中的下标
+     */
+    static final class Segment {
+        static final Segment EMPTY = build(new Docs(1));
+
+        final long[] ids;
+        final String[] names;
+        final String[] areas;
+        // 词项 --> 包含该词项的文档序号，升序
+        final Map<Long, int[]> postings;
+        final long postingCount;
+        final long bytes;
+
+        private Segment(long[] ids, String[] names, String[] areas, Map<Long, int[]> postings, long postingCount, long bytes) {
+            this.ids = ids;
+            this.names = names;
+            this.areas = areas;
+            this.postings = postings;
+            this.postingCount = postingCount;
+            this.bytes = bytes;
+        }
+
+        /**
+         * 两遍扫描：第一遍统计每个词项的文档数，按准确长度分配数组，第二遍填入文档序号
+         */
+        static Segment build(Docs docs) {
+            int n = docs.size;
+            // 词项 --> {文档数, 最后一个文档序号, 已填入数}
+            Map<Long, int[]> counts = new HashMap<>();
+            for (int ord = 0; ord < n; ord++) {
+                int doc = ord;
+                forEachTerm(docs.names[ord], term -> count(counts, term, doc));
+                forEachTerm(docs.areas[ord], term -> count(counts, term, doc));
+            }
+            Map<Long, int[]> postings = new HashMap<>(counts.size() * 2);
+            long postingCount = 0;
+            for (Map.Entry<Long, int[]> entry : counts.entrySet()) {
+                int[] count = entry.getValue();
+                postings.put(entry.getKey(), new int[count[0]]);
+                postingCount += count[0];
+                count[1] = -1;
+            }
+            for (int ord = 0; ord < n; ord++) {
+                int doc = ord;
+                forEachTerm(docs.names[ord], term -> fill(counts, postings, term, doc));
+                forEachTerm(docs.areas[ord], term -> fill(counts, postings, term, doc));
+            }
+            long[] ids = Arrays.copyOf(docs.ids, n);
+            String[] names = Arrays.copyOf(docs.names, n);
+            String[] areas = Arrays.copyOf(docs.areas, n);
+            // 每个文档：id 8字节、两个字符串引用和字符串本身；每个词项：HashMap节点、Long键、数组头约80字节；倒排表每项4字节
+            long bytes = 16L * n + 8L * n + postings.size() * 80L + postingCount * 4;
+            for (int ord = 0; ord < n; ord++) {
+                bytes += stringBytes(names[ord]) + stringBytes(areas[ord]);
+            }
+            return new Segment(ids, names, areas, postings, postingCount, bytes);
+        }
+
+        /**
+         * 关键字只有一个字时取该字的倒排表，否则求所有二元词项倒排表的交集，从最短的开始
+         */
+        int[] candidates(String query) {
+            List<int[]> lists = new ArrayList<>();
+            boolean[] missing = new boolean[1];
+            if (query.codePointCount(0, query.length()) == 1) {
+                lists.add(postings.get((long) query.codePointAt(0)));
+            } else {
+                forEachBigram(query, term -> lists.add(postings.get(term)));
+            }
+            for (int[] list : lists) {
+                if (list == null) {
+                    missing[0] = true;
+                }
+            }
+            if (missing[0]) {
+                return new int[0];
+            }
+            lists.sort((a, b) -> Integer.compare(a.length, b.length));
+            int[] result = lists.get(0);
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                result = intersect(result, lists.get(i));
+            }
+            return result;
+        }
+
+        private static int[] intersect(int[] small, int[] large) {
+            int[] result = new int[small.length];
+            int count = 0;
+            int j = 0;
+            for (int value : small) {
+                // 短表的每个值在长表剩余部分中二分查找
+                int found = Arrays.binarySearch(large, j, large.length, value);
+                if (found >= 0) {
+                    result[count++] = value;
+                    j = found + 1;
+                } else {
+                    j = -found - 1;
+                }
+                if (j >= large.length) {
+                    break;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        private static void count(Map<Long, int[]> counts, long term, int doc) {
+            int[] count = counts.computeIfAbsent(term, k -> new int[]{0, -1, 0});
+            // 同一文档中重复出现的词项只记一次
+            if (count[1] != doc) {
+                count[0]++;
+                count[1] = doc;
+            }
+        }
+
+        private static void fill(Map<Long, int[]> counts, Map<Long, int[]> postings, long term, int doc) {
+            int[] count = counts.get(term);
+            if (count[1] != doc) {
+                postings.get(term)[count[2]++] = doc;
+                count[1] = doc;
+            }
+        }
+    }
+
+    // 每个字（码点）和每两个相邻的字各是一个词项，二元词项用第42位区分
+    private static void forEachTerm(String text, LongConsumer consumer) {
+        int previous = -1;
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            consumer.accept(c);
+            if (previous >= 0) {
+                consumer.accept(bigram(previous, c));
+            }
+            previous = c;
+            i += Character.charCount(c);
+        }
+    }
+
+    private static void forEachBigram(String text, LongConsumer consumer) {
+        int previous = -1;
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            if (previous >= 0) {
+                consumer.accept(bigram(previous, c));
+            }
+            previous = c;
+            i += Character.charCount(c);
+        }
+    }
+
+    private static long bigram(int first, int second) {
+        return BIGRAM | (long) first << 21 | second;
+    }
+}
@@ -0,0 +1,56 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * ClassName: SingleFlight
+ * Package: com.hmdp.utils
+ * Description: 合并同一JVM内对同一个key的并发加载，只有第一个线程真正执行，其余线程等待并共享它的结果
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 15:02
+ * @Version 1.0
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = calls.putIfAbsent(key, call);
+        // 已有线程在加载 --> 等待它的结果
+        if (inFlight != null) {
+            return (T) await(inFlight);
+        }
+        // 当前线程负责加载，结束后移除，之后的请求重新走缓存
+        try {
+            T value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (Throwable e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
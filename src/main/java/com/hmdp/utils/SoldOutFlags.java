@@ -0,0 +1,91 @@
+package com.hmdp.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+
+/**
+ * ClassName: SoldOutFlags
+ * Package: com.hmdp.utils
+ * Description: 秒杀券的本地售罄标记。下单脚本返回库存不足后标记并广播给其他节点，之后的请求在内存中直接拒绝，不再执行脚本；
+ * 补充库存时清除并广播。标记有有效期，过期后放行一个请求重新判断，避免与补库存并发时标记残留
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 00:20
+ * @Version 1.0
+ */
+@Component
+public class SoldOutFlags {
+
+    private static final String SOLD_OUT = "1";
+    private static final String AVAILABLE = "0";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long ttlMillis;
+
+    // 优惠券id --> 标记的过期时间
+    private final Map<Long, Long> flags = new ConcurrentHashMap<>();
+
+    public SoldOutFlags(StringRedisTemplate stringRedisTemplate,
+                        @Value("${hmdp.seckill.sold-out-ttl-millis:3000}") long ttlMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public boolean isSoldOut(Long voucherId) {
+        Long expireAt = flags.get(voucherId);
+        if (expireAt == null) {
+            return false;
+        }
+        if (expireAt > System.currentTimeMillis()) {
+            return true;
+        }
+        flags.remove(voucherId, expireAt);
+        return false;
+    }
+
+    /**
+     * 标记售罄并通知其他节点
+     */
+    public void markSoldOut(Long voucherId) {
+        Long previous = flags.put(voucherId, System.currentTimeMillis() + ttlMillis);
+        // 同一个节点并发收到多个库存不足时只广播一次
+        if (previous == null || previous <= System.currentTimeMillis()) {
+            stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, voucherId + ":" + SOLD_OUT);
+        }
+    }
+
+    /**
+     * 定时任务确认仍然售罄时调用：不论本地标记是否过期都广播，其他节点的标记一起延期
+     */
+    public void renewSoldOut(Long voucherId) {
+        flags.put(voucherId, System.currentTimeMillis() + ttlMillis);
+        stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, voucherId + ":" + SOLD_OUT);
+    }
+
+    /**
+     * 库存补充后清除标记并通知其他节点
+     */
+    public void clear(Long voucherId) {
+        flags.remove(voucherId);
+        stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, voucherId + ":" + AVAILABLE);
+    }
+
+    /**
+     * 收到其他节点的广播，消息格式 voucherId:1（售罄）或 voucherId:0（有库存）
+     */
+    public void onMessage(String message) {
+        int index = message.indexOf(':');
+        Long voucherId = Long.valueOf(message.substring(0, index));
+        if (SOLD_OUT.equals(message.substring(index + 1))) {
+            flags.put(voucherId, System.currentTimeMillis() + ttlMillis);
+        } else {
+            flags.remove(voucherId);
+        }
+    }
+}
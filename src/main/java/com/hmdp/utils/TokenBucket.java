@@ -0,0 +1,42 @@
+package com.hmdp.utils;
+
+/**
+ * ClassName: TokenBucket
+ * Package: com.hmdp.utils
+ * Description: 本地令牌桶，取令牌时按距上次补充经过的时间补充令牌，不需要定时任务
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 04:00
+ * @Version 1.0
+ */
+public class TokenBucket {
+
+    private final int capacity;
+    // 每纳秒生成的令牌数
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(int capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 取一个令牌
+     * @return 没有令牌返回false
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
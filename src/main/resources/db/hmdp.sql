@@ -65,6 +65,21 @@ CREATE TABLE `tb_blog_comments`  (
 -- Records of tb_blog_comments
 -- ----------------------------
 
+-- ----------------------------
+-- Table structure for tb_cache_outbox
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_cache_outbox`;
+CREATE TABLE `tb_cache_outbox`  (
+  `id` bigint(20) UNSIGNED NOT NULL AUTO_INCREMENT COMMENT '主键',
+  `cache_key` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '需要删除的缓存key',
+  `stage` tinyint(1) UNSIGNED NOT NULL DEFAULT 1 COMMENT '1：待首次删除；2：待延迟二次删除',
+  `retries` int(8) UNSIGNED NOT NULL DEFAULT 0 COMMENT '连续失败次数',
+  `next_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次处理时间',
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_next_time`(`next_time`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '缓存失效发件箱，与业务数据在同一事务中写入' ROW_FORMAT = Compact;
+
 -- ----------------------------
 -- Table structure for tb_follow
 -- ----------------------------
@@ -0,0 +1,12 @@
+-- 确认任务处理完成：只删除分数仍是本次租约到期时间的任务，处理期间被重新加入的任务保留
+-- KEYS[1] 延迟队列 delay:{queue}
+-- ARGV[1] 租约到期时间epoch毫秒，ARGV[2..n] 任务
+local removed = 0
+local lease = tonumber(ARGV[1])
+for i = 2, #ARGV do
+    local score = redis.call('zscore', KEYS[1], ARGV[i])
+    if score and tonumber(score) == lease then
+        removed = removed + redis.call('zrem', KEYS[1], ARGV[i])
+    end
+end
+return removed
@@ -0,0 +1,8 @@
+-- 取出到期的任务，分数改为租约到期时间：处理成功后确认删除，处理失败或进程退出，租约到期后被重新取出
+-- KEYS[1] 延迟队列 delay:{queue}
+-- ARGV[1] 当前时间epoch毫秒，ARGV[2] 最多取出的数量，ARGV[3] 租约到期时间epoch毫秒
+local members = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+for _, member in ipairs(members) do
+    redis.call('zadd', KEYS[1], ARGV[3], member)
+end
+return members
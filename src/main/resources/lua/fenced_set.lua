@@ -0,0 +1,15 @@
+-- 带fencing token写入缓存：已写入过更大的token说明当前写入者是过期的锁持有者，拒绝写入
+-- KEYS[1] 缓存key，KEYS[2] 该缓存已写入的最大token {缓存key}:fence，与缓存在同一个slot
+-- ARGV[1] 写入者的fencing token，ARGV[2] 值，ARGV[3] 过期时间（毫秒，0为不过期），ARGV[4] token记录的过期时间（毫秒）
+-- 返回值：1 已写入；0 token过期，未写入
+local last = redis.call('get', KEYS[2])
+if last and tonumber(last) > tonumber(ARGV[1]) then
+    return 0
+end
+redis.call('set', KEYS[2], ARGV[1], 'px', ARGV[4])
+if tonumber(ARGV[3]) > 0 then
+    redis.call('set', KEYS[1], ARGV[2], 'px', ARGV[3])
+else
+    redis.call('set', KEYS[1], ARGV[2])
+end
+return 1
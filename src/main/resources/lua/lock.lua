@@ -0,0 +1,21 @@
+-- 加锁：锁不存在 --> 写入持有者并生成新的fencing token；持有者相同且允许重入 --> 重入次数+1
+-- KEYS[1] 锁的key，KEYS[2] 该锁的fencing token计数器 {锁的key}:fence，与锁在同一个slot
+-- ARGV[1] 持有者标识，ARGV[2] 租期（毫秒），ARGV[3] 是否允许重入（1/0）
+-- 返回值：成功返回fencing token（>0）；失败返回 -剩余租期毫秒数，作为等待时间的参考
+local owner = redis.call('hget', KEYS[1], 'owner')
+if owner == false then
+    local token = redis.call('incr', KEYS[2])
+    redis.call('hmset', KEYS[1], 'owner', ARGV[1], 'count', 1, 'token', token)
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return token
+end
+if owner == ARGV[1] and ARGV[3] == '1' then
+    redis.call('hincrby', KEYS[1], 'count', 1)
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return tonumber(redis.call('hget', KEYS[1], 'token'))
+end
+local ttl = redis.call('pttl', KEYS[1])
+if ttl < 1 then
+    ttl = 1
+end
+return -ttl
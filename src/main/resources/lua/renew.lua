@@ -0,0 +1,8 @@
+-- 续期：仍是持有者时重置租期
+-- KEYS[1] 锁的key；ARGV[1] 持有者标识，ARGV[2] 租期（毫秒）
+-- 返回值：1 续期成功；0 已不是持有者
+if redis.call('hget', KEYS[1], 'owner') == ARGV[1] then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
@@ -0,0 +1,31 @@
+-- 秒杀资格判断：时间窗口 --> 库存 --> 一人一单 --> 扣减库存、记录购买用户、订单写入消息流，一次往返原子完成
+-- 所有key使用同一个hash tag，集群模式下在同一个slot：不分片时是 {voucherId}，分片库存时是用户路由到的分片 {voucherId:shard}
+-- KEYS[1] 库存 seckill:stock:{tag}
+-- KEYS[2] 已购买用户集合 seckill:order:{tag}
+-- KEYS[3] 秒杀时间窗口 seckill:window:{tag}，hash字段begin、end为epoch毫秒
+-- KEYS[4] 订单消息流 seckill:orders:{tag}
+-- ARGV[1] 用户id，ARGV[2] 当前时间epoch毫秒，ARGV[3] 订单id，ARGV[4] 优惠券id
+-- 返回值：0 成功；1 库存未加载（优惠券不存在或不是秒杀券）；2 未开始；3 已结束；4 库存不足；5 重复下单
+-- 库存和时间窗口都存在才算加载完成
+local stock = redis.call('get', KEYS[1])
+local window = redis.call('hmget', KEYS[3], 'begin', 'end')
+if stock == false or not window[1] then
+    return 1
+end
+local now = tonumber(ARGV[2])
+if now < tonumber(window[1]) then
+    return 2
+end
+if window[2] and now > tonumber(window[2]) then
+    return 3
+end
+if tonumber(stock) <= 0 then
+    return 4
+end
+if redis.call('sismember', KEYS[2], ARGV[1]) == 1 then
+    return 5
+end
+redis.call('sadd', KEYS[2], ARGV[1])
+redis.call('incrby', KEYS[1], -1)
+redis.call('xadd', KEYS[4], '*', 'id', ARGV[3], 'userId', ARGV[1], 'voucherId', ARGV[4])
+return 0
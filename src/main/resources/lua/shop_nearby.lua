@@ -0,0 +1,15 @@
+-- 附近商铺分页：首次查询时用GEORADIUS按距离排序，结果连同距离存为快照，之后各页只按下标读取快照
+-- KEYS[1] 商铺类型的GEO集合 shop:geo:{typeId}
+-- KEYS[2] 本次查询的快照 shop:geo:scroll:{typeId}:gx:gy，gx、gy为取整后的格子编号，与KEYS[1]使用相同的hash tag
+-- ARGV[1] 取整后的经度 ARGV[2] 取整后的纬度 ARGV[3] 半径(米) ARGV[4] 最多结果数 ARGV[5] 快照有效期(毫秒)
+-- ARGV[6] 起始下标 ARGV[7] 结束下标
+-- 返回值：{商铺id, 距离(米), 商铺id, 距离(米), ...}
+if redis.call('exists', KEYS[2]) == 0 then
+    local n = redis.call('georadius', KEYS[1], ARGV[1], ARGV[2], ARGV[3], 'm',
+            'ASC', 'COUNT', ARGV[4], 'STOREDIST', KEYS[2])
+    if n == 0 then
+        return {}
+    end
+    redis.call('pexpire', KEYS[2], ARGV[5])
+end
+return redis.call('zrange', KEYS[2], ARGV[6], ARGV[7], 'WITHSCORES')
@@ -0,0 +1,9 @@
+-- 增加已加载的秒杀券的库存；没有加载时不增加，避免凭空创建库存key，之后加载时会从数据库读取最新库存
+-- KEYS[1] 秒杀时间窗口 seckill:window:{tag}，KEYS[2] 库存 seckill:stock:{tag}，两个key的hash tag相同
+-- ARGV[1] 增加的数量
+-- 返回值：1 已增加；0 没有加载
+if redis.call('exists', KEYS[1]) == 0 or redis.call('exists', KEYS[2]) == 0 then
+    return 0
+end
+redis.call('incrby', KEYS[2], ARGV[1])
+return 1
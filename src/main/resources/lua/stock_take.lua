@@ -0,0 +1,13 @@
+-- 从一个库存分片中扣减至多ARGV[1]个库存，只访问一个key，分片可以在不同的slot上
+-- KEYS[1] 库存分片 seckill:stock:{voucherId:n}
+-- 返回值：实际扣减的数量，0 分片已空；-1 分片不存在
+local stock = redis.call('get', KEYS[1])
+if stock == false then
+    return -1
+end
+local n = math.min(tonumber(stock), tonumber(ARGV[1]))
+if n <= 0 then
+    return 0
+end
+redis.call('decrby', KEYS[1], n)
+return n
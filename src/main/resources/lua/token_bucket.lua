@@ -0,0 +1,27 @@
+-- 所有节点共享的令牌桶：按距上次补充经过的时间补充令牌，再取一个令牌
+-- KEYS[1] 令牌桶 rate:limit:{rule}:{key}，hash字段tokens、ts
+-- ARGV[1] 容量，ARGV[2] 每秒生成的令牌数
+-- 返回值：1 取到令牌；0 没有令牌
+-- 当前时间取Redis服务器的TIME，不使用各节点的时钟；调用TIME后还要写入，按命令而不是脚本复制
+redis.replicate_commands()
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1])
+local ts = tonumber(bucket[2])
+if tokens == nil then
+    tokens = capacity
+    ts = now
+end
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+local allowed = 0
+if tokens >= 1 then
+    tokens = tokens - 1
+    allowed = 1
+end
+redis.call('hset', KEYS[1], 'tokens', tokens, 'ts', now)
+-- 桶装满所需的时间之后没有访问，与新建的桶等价，可以删除
+redis.call('pexpire', KEYS[1], math.ceil(capacity / rate * 1000) + 1000)
+return allowed
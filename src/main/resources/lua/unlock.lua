@@ -0,0 +1,14 @@
+-- 释放锁：只有持有者能释放，重入次数减到0时删除锁并通知等待者
+-- KEYS[1] 锁的key
+-- ARGV[1] 持有者标识，ARGV[2] 释放通知的频道（频道不是key，不参与slot计算）
+-- 返回值：-1 不是持有者（锁已过期或被他人持有）；0 已释放；>0 剩余重入次数
+if redis.call('hget', KEYS[1], 'owner') ~= ARGV[1] then
+    return -1
+end
+local count = redis.call('hincrby', KEYS[1], 'count', -1)
+if count > 0 then
+    return count
+end
+redis.call('del', KEYS[1])
+redis.call('publish', ARGV[2], KEYS[1])
+return 0
@@ -0,0 +1,266 @@
+package com.hmdp;
+
+import cn.hutool.core.convert.Convert;
+import com.hmdp.dto.LoginFormDTO;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Voucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.utils.SeckillKeys;
+import com.hmdp.utils.SeckillStockSync;
+import com.hmdp.utils.ShardedStock;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_CODE_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: SeckillLoadTest
+ * Package: com.hmdp
+ * Description: 秒杀压测。用内存数据库H2和内嵌Redis启动整个应用，模拟大量用户并发登录、查询商铺、抢购秒杀券，
+ * 校验不超卖、一人一单，输出每个阶段的吞吐量和p50/p99/p999延迟。
+ * 默认启动内嵌Redis；指定了系统属性spring.redis.port时改用该端口上已有的Redis，测试会写入数据，不要指向正式环境。
+ * 其他配置也可以用系统属性覆盖，如 -Dhmdp.seckill.shard.count=4 -Dhmdp.seckill.shard.min-stock=1 压测分片库存。
+ * 默认的mvn test不运行，用 mvn test -Pload-test 或 -Dtest=SeckillLoadTest 运行
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 05:00
+ * @Version 1.0
+ */
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class SeckillLoadTest {
+
+    // 规模可以用系统属性调整，如 -Dload.users=10000 -Dload.stock=2000
+    private static final int USERS = Integer.getInteger("load.users", 2000);
+    private static final int STOCK = Integer.getInteger("load.stock", 500);
+    // 每个用户抢购的次数，大于1用来校验一人一单
+    private static final int ATTEMPTS_PER_USER = Integer.getInteger("load.attempts", 3);
+    private static final int SHOP_REQUESTS = Integer.getInteger("load.shop-requests", 20000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 200);
+    // data-h2.sql中的商铺数量
+    private static final int SHOPS = 1000;
+    private static final long PERSIST_TIMEOUT_MILLIS = 30000;
+
+    private static RedisServer redisServer;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private IVoucherOrderService voucherOrderService;
+
+    @Autowired
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Autowired
+    private ShardedStock shardedStock;
+
+    @Autowired
+    private SeckillStockSync seckillStockSync;
+
+    @BeforeClass
+    public static void startRedis() throws IOException {
+        if (System.getProperty("spring.redis.port") != null) {
+            return;
+        }
+        int port = freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        System.setProperty("spring.redis.port", String.valueOf(port));
+    }
+
+    @AfterClass
+    public static void stopRedis() throws IOException {
+        if (redisServer != null) {
+            redisServer.stop();
+            System.clearProperty("spring.redis.port");
+        }
+    }
+
+    @Test
+    public void seckillUnderLoad() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            // 1.登录：发送验证码，从Redis读出验证码后登录
+            String[] tokens = new String[USERS];
+            run(pool, "login", USERS, i -> {
+                String phone = "138" + String.format("%08d", i);
+                restTemplate.postForObject("/user/code?phone={phone}", null, Result.class, phone);
+                LoginFormDTO form = new LoginFormDTO();
+                form.setPhone(phone);
+                form.setCode(stringRedisTemplate.opsForValue().get(LOGIN_CODE_KEY + phone));
+                Result result = restTemplate.postForObject("/user/login", form, Result.class);
+                tokens[i] = result.getData() == null ? null : result.getData().toString();
+                return Boolean.TRUE.equals(result.getSuccess());
+            });
+            assertTrue(Arrays.stream(tokens).allMatch(token -> token != null));
+
+            // 2.查询商铺，命中缓存
+            run(pool, "shop", SHOP_REQUESTS, i -> {
+                long shopId = ThreadLocalRandom.current().nextInt(SHOPS) + 1;
+                Result result = restTemplate.getForObject("/shop/{id}", Result.class, shopId);
+                return Boolean.TRUE.equals(result.getSuccess()) && result.getData() != null;
+            });
+
+            // 3.抢购：每个用户抢购多次，请求打乱顺序并发发出
+            Long voucherId = createSeckillVoucher();
+            List<Integer> attempts = new ArrayList<>(USERS * ATTEMPTS_PER_USER);
+            for (int i = 0; i < USERS * ATTEMPTS_PER_USER; i++) {
+                attempts.add(i % USERS);
+            }
+            Collections.shuffle(attempts);
+            Set<Long> orderIds = Collections.synchronizedSet(new HashSet<>());
+            int admitted = run(pool, "seckill", attempts.size(), i -> {
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("authorization", tokens[attempts.get(i)]);
+                Result result = restTemplate.exchange("/voucher-order/seckill/{id}", HttpMethod.POST,
+                        new HttpEntity<>(headers), Result.class, voucherId).getBody();
+                if (Boolean.TRUE.equals(result.getSuccess())) {
+                    orderIds.add(Convert.toLong(result.getData()));
+                    return true;
+                }
+                return false;
+            });
+
+            // 4.校验：Redis不超卖、一人一单
+            int expected = Math.min(STOCK, USERS);
+            assertEquals("获得资格的请求数应等于库存和用户数的较小值", expected, admitted);
+            assertEquals("订单id不应重复", expected, orderIds.size());
+            long redisStock = 0, redisBuyers = 0;
+            for (String tag : SeckillKeys.tags(voucherId, shardedStock.shardCount(voucherId))) {
+                redisStock += Long.parseLong(stringRedisTemplate.opsForValue().get(SeckillKeys.stock(tag)));
+                redisBuyers += stringRedisTemplate.opsForSet().size(SeckillKeys.buyers(tag));
+            }
+            assertEquals("Redis库存", STOCK - expected, redisStock);
+            assertEquals("购买用户数", expected, redisBuyers);
+
+            // 5.校验：订单由消息流的消费者落库后，数据库不超卖、一人一单
+            long start = System.currentTimeMillis();
+            List<VoucherOrder> orders;
+            do {
+                Thread.sleep(200);
+                orders = voucherOrderService.query().eq("voucher_id", voucherId).list();
+            } while (orders.size() < expected && System.currentTimeMillis() - start < PERSIST_TIMEOUT_MILLIS);
+            System.out.printf("订单落库耗时：%d ms%n", System.currentTimeMillis() - start);
+            assertEquals("落库的订单数应等于获得资格的请求数", expected, orders.size());
+            Set<Long> buyers = new HashSet<>();
+            for (VoucherOrder order : orders) {
+                assertTrue("订单id应来自获得资格的请求", orderIds.contains(order.getId()));
+                assertTrue("每个用户最多一单", buyers.add(order.getUserId()));
+            }
+            SeckillVoucher seckillVoucher = seckillVoucherService.getById(voucherId);
+            assertEquals("数据库库存", Integer.valueOf(STOCK - expected), seckillVoucher.getStock());
+
+            // 6.校验：对账不应发现差异
+            seckillStockSync.reconcile();
+            for (Map<String, Object> drift : seckillStockSync.lastReport()) {
+                assertNotEquals("对账发现差异：" + drift, voucherId, drift.get("voucherId"));
+            }
+
+            // 7.校验：补充库存只允许管理员，未登录401，普通用户403
+            assertEquals(401, restTemplate.postForEntity("/voucher/seckill/{id}/stock?count=1", null,
+                    String.class, voucherId).getStatusCodeValue());
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("authorization", tokens[0]);
+            assertEquals(403, restTemplate.exchange("/voucher/seckill/{id}/stock?count=1", HttpMethod.POST,
+                    new HttpEntity<>(headers), String.class, voucherId).getStatusCodeValue());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Long createSeckillVoucher() {
+        Voucher voucher = new Voucher();
+        voucher.setShopId(1L);
+        voucher.setTitle("压测秒杀券");
+        voucher.setPayValue(100L);
+        voucher.setActualValue(1000L);
+        voucher.setType(1);
+        voucher.setStock(STOCK);
+        voucher.setBeginTime(LocalDateTime.now().minusMinutes(1));
+        voucher.setEndTime(LocalDateTime.now().plusHours(1));
+        Result result = restTemplate.postForObject("/voucher/seckill", voucher, Result.class);
+        assertTrue(Boolean.TRUE.equals(result.getSuccess()));
+        return Convert.toLong(result.getData());
+    }
+
+    /**
+     * 用线程池并发执行requests次请求，记录每次的耗时，输出吞吐量和延迟分位数
+     * @return 成功的请求数
+     */
+    private int run(ExecutorService pool, String phase, int requests, IntPredicate request) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> {
+                long begin = System.nanoTime();
+                if (request.test(index)) {
+                    succeeded.incrementAndGet();
+                }
+                latencies[index] = System.nanoTime() - begin;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        System.out.printf("%-8s 请求 %6d  成功 %6d  吞吐量 %8.0f 次/秒  p50 %6.2f ms  p99 %6.2f ms  p999 %6.2f ms  max %6.2f ms%n",
+                phase, requests, succeeded.get(), requests * 1e9 / elapsed,
+                percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                latencies[requests - 1] / 1e6);
+        return succeeded.get();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.User;
+import com.hmdp.entity.Voucher;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: BinaryCacheCodecTest
+ * Package: com.hmdp.utils
+ * Description: 二进制编码的往返测试：每种注册类型、带逻辑过期时间的值、null值，以及未注册类型走JSON
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 09:50
+ * @Version 1.0
+ */
+public class BinaryCacheCodecTest {
+
+    private final BinaryCacheCodec codec = new BinaryCacheCodec();
+
+    // 整秒，时间按毫秒编码
+    private final LocalDateTime now = LocalDateTime.of(2026, 10, 19, 9, 50, 0);
+
+    @Test
+    public void registeredTypes() {
+        assertRoundTrip(shop(), Shop.class);
+        assertRoundTrip(user(), User.class);
+        assertRoundTrip(voucher(), Voucher.class);
+        // 可空字段全为null
+        assertRoundTrip(new Shop(), Shop.class);
+        assertRoundTrip(new User(), User.class);
+        assertRoundTrip(new Voucher(), Voucher.class);
+    }
+
+    @Test
+    public void nullValue() {
+        byte[] bytes = codec.encode(null);
+        assertTrue(codec.supports(bytes));
+        assertNull(codec.decode(bytes, Shop.class));
+        assertNull(codec.decode(bytes, Blog.class));
+
+        long expireMillis = System.currentTimeMillis() + 60_000;
+        byte[] withExpire = codec.encodeWithExpire(null, expireMillis);
+        assertTrue(codec.supports(withExpire));
+        for (Class<?> type : new Class<?>[]{Shop.class, User.class, Voucher.class, Blog.class}) {
+            LogicalValue<?> logical = codec.decodeWithExpire(withExpire, type);
+            assertNull(logical.getData());
+            assertEquals(expireMillis, logical.getExpireMillis());
+        }
+    }
+
+    @Test
+    public void unregisteredTypeUsesJson() {
+        Blog blog = new Blog().setId(1L).setTitle("探店").setLiked(3);
+        byte[] bytes = codec.encode(blog);
+        assertTrue(!codec.supports(bytes));
+        assertEquals(blog, codec.decode(bytes, Blog.class));
+        long expireMillis = System.currentTimeMillis() + 60_000;
+        LogicalValue<Blog> logical = codec.decodeWithExpire(codec.encodeWithExpire(blog, expireMillis), Blog.class);
+        assertEquals(blog, logical.getData());
+        assertEquals(expireMillis, logical.getExpireMillis());
+    }
+
+    private <T> void assertRoundTrip(T value, Class<T> type) {
+        byte[] bytes = codec.encode(value);
+        assertEquals(BinaryCacheCodec.MAGIC, bytes[0]);
+        assertEquals(value, codec.decode(bytes, type));
+
+        long expireMillis = System.currentTimeMillis() + 60_000;
+        LogicalValue<T> logical = codec.decodeWithExpire(codec.encodeWithExpire(value, expireMillis), type);
+        assertEquals(value, logical.getData());
+        assertEquals(expireMillis, logical.getExpireMillis());
+    }
+
+    private Shop shop() {
+        return new Shop().setId(1L).setName("103茶餐厅").setTypeId(1L)
+                .setImages("https://example.com/1.jpg,https://example.com/2.jpg")
+                .setArea("大关").setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192).setY(30.316078).setAvgPrice(80L)
+                .setSold(4215).setComments(3035).setScore(37).setOpenHours("10:00-22:00")
+                .setCreateTime(now).setUpdateTime(now.plusDays(1)).setDistance(12.5);
+    }
+
+    private User user() {
+        return new User().setId(-7L).setPhone("13800000000").setPassword("")
+                .setNickName("用户_abc").setIcon("/imgs/icons/a.jpg")
+                .setCreateTime(now).setUpdateTime(now.minusYears(60));
+    }
+
+    private Voucher voucher() {
+        return new Voucher().setId(Long.MAX_VALUE).setShopId(1L).setTitle("100元代金券")
+                .setSubTitle("周一至周日均可使用").setRules("全场通用\\n无需预约")
+                .setPayValue(8000L).setActualValue(10000L).setType(1).setStatus(1).setStock(Integer.MIN_VALUE)
+                .setBeginTime(now).setEndTime(now.plusHours(2)).setCreateTime(now).setUpdateTime(now);
+    }
+}
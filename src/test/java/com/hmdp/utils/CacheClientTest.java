@@ -0,0 +1,148 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: CacheClientTest
+ * Package: com.hmdp.utils
+ * Description: 逻辑过期的批量查询：缺失的id一次查库，数据库中不存在的写回带过期时间的空值，之后的批量和单个查询不再查库。使用内嵌Redis
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 11:40
+ * @Version 1.0
+ */
+public class CacheClientTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate template;
+
+    private CacheRebuildScheduler rebuildScheduler;
+    private CacheClient cacheClient;
+    // 数据库中存在的商铺id
+    private final List<Long> existing = Arrays.asList(1L, 3L);
+    private final AtomicInteger batchLoads = new AtomicInteger();
+    private final List<Long> loadedIds = new ArrayList<>();
+    private final AtomicInteger singleLoads = new AtomicInteger();
+
+    @BeforeClass
+    public static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        factory = new LettuceConnectionFactory("127.0.0.1", port);
+        factory.afterPropertiesSet();
+        template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+    }
+
+    @AfterClass
+    public static void stopRedis() throws IOException {
+        factory.destroy();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() {
+        template.execute((RedisCallback<Object>) connection -> {
+            connection.flushAll();
+            return null;
+        });
+        rebuildScheduler = new CacheRebuildScheduler(1, 10, 1000, 1000);
+        // 不开启本地缓存和热点key，每次查询都读Redis
+        cacheClient = new CacheClient(template, new JsonCacheCodec(),
+                new HotKeyDetector(false, 500, 100, 5, 4096, 1), rebuildScheduler,
+                new CacheMetrics(new SimpleMeterRegistry()), new RedisLock(template, 30000),
+                100, false, 1000, 30, 0, false, 1.0);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        rebuildScheduler.shutdown();
+    }
+
+    @Test
+    public void batchCachesMissingIdsAsNull() {
+        List<Long> ids = Arrays.asList(1L, 2L, 3L, 4L);
+        List<Shop> first = queryBatch(ids);
+        assertEquals(Arrays.asList(1L, null, 3L, null), idsOf(first));
+        assertEquals(1, batchLoads.get());
+        assertEquals(ids, loadedIds);
+        // 不存在的id写入空值，按空值的有效期过期
+        long ttl = template.getExpire(CACHE_SHOP_KEY + 2, TimeUnit.SECONDS);
+        assertTrue(ttl > 0 && ttl <= TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL));
+        assertEquals(Long.valueOf(-1), template.getExpire(CACHE_SHOP_KEY + 1, TimeUnit.SECONDS));
+
+        // 再次查询全部命中Redis，不再查库
+        List<Shop> second = queryBatch(ids);
+        assertEquals(idsOf(first), idsOf(second));
+        assertEquals(1, batchLoads.get());
+
+        // 单个查询同样读到空值
+        assertNull(cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, 2L, Shop.class, this::load, 30L, TimeUnit.MINUTES));
+        assertEquals(0, singleLoads.get());
+    }
+
+    @Test
+    public void batchLoadsOnlyUncachedIds() {
+        queryBatch(Arrays.asList(1L, 2L));
+        loadedIds.clear();
+        List<Shop> shops = queryBatch(Arrays.asList(2L, 3L, 1L));
+        assertEquals(Arrays.asList(null, 3L, 1L), idsOf(shops));
+        assertEquals(2, batchLoads.get());
+        assertEquals(Arrays.asList(3L), loadedIds);
+    }
+
+    private List<Shop> queryBatch(List<Long> ids) {
+        return cacheClient.queryBatchWithLogicalExpire(CACHE_SHOP_KEY, ids, Shop.class,
+                this::load, this::loadBatch, Shop::getId, 30L, TimeUnit.MINUTES);
+    }
+
+    private Shop load(Long id) {
+        singleLoads.incrementAndGet();
+        return existing.contains(id) ? shop(id) : null;
+    }
+
+    private List<Shop> loadBatch(Collection<Long> ids) {
+        batchLoads.incrementAndGet();
+        loadedIds.addAll(ids);
+        return ids.stream().filter(existing::contains).map(CacheClientTest::shop).collect(Collectors.toList());
+    }
+
+    private static Shop shop(Long id) {
+        return new Shop().setId(id).setName("shop" + id);
+    }
+
+    private static List<Long> idsOf(List<Shop> shops) {
+        return shops.stream().map(shop -> shop == null ? null : shop.getId()).collect(Collectors.toList());
+    }
+}
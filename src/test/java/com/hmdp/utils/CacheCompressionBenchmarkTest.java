@@ -0,0 +1,182 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.RandomUtil;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: CacheCompressionBenchmarkTest
+ * Package: com.hmdp.utils
+ * Description: 对比压缩前后的值大小和每次命中的解码耗时；本机6379端口有Redis时，额外用MEMORY USAGE统计实际占用。
+ * 默认的mvn test不运行，用 -Pload-test 或 -Dtest=CacheCompressionBenchmarkTest 运行
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 22:05
+ * @Version 1.0
+ */
+@Slf4j
+public class CacheCompressionBenchmarkTest {
+
+    private static final int ENTITIES = 1000;
+    private static final int ROUNDS = 20;
+    private static final byte[] MEMORY_USAGE = "return redis.call('memory', 'usage', KEYS[1])".getBytes(StandardCharsets.UTF_8);
+
+    private final CacheCodec plain = new JsonCacheCodec();
+    private final CompressingCacheCodec compressing = new CompressingCacheCodec(new JsonCacheCodec(), 512, 1);
+
+    @Test
+    public void benchmark() {
+        List<Object> values = new ArrayList<>();
+        for (long i = 1; i <= ENTITIES; i++) {
+            values.add(shop(i));
+            values.add(blog(i));
+        }
+        report("shop+blog", values);
+    }
+
+    private void report(String name, List<Object> values) {
+        List<byte[]> raw = new ArrayList<>(values.size());
+        List<byte[]> compressed = new ArrayList<>(values.size());
+        long rawBytes = 0;
+        long compressedBytes = 0;
+        for (Object value : values) {
+            byte[] r = plain.encode(value);
+            byte[] c = compressing.encode(value);
+            raw.add(r);
+            compressed.add(c);
+            rawBytes += r.length;
+            compressedBytes += c.length;
+        }
+        Class<?>[] types = new Class<?>[values.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = values.get(i).getClass();
+        }
+        // 两种方式都预热后再计时，每次"命中"都是完整的解码
+        decodeNanos(plain, raw, types);
+        decodeNanos(compressing, compressed, types);
+        long rawNanos = decodeNanos(plain, raw, types);
+        long compressedNanos = decodeNanos(compressing, compressed, types);
+        long encodeNanos = encodeNanos(values);
+        int hits = values.size() * ROUNDS;
+
+        log.info(String.format("[%s] %d个值：原始%d字节，压缩后%d字节，节省%.1f%%",
+                name, values.size(), rawBytes, compressedBytes, 100.0 * (rawBytes - compressedBytes) / rawBytes));
+        log.info(String.format("[%s] 每次命中解码：不压缩%.2fus，压缩%.2fus，解压额外开销%.2fus；每次写入压缩%.2fus",
+                name, rawNanos / 1000.0 / hits, compressedNanos / 1000.0 / hits,
+                (compressedNanos - rawNanos) / 1000.0 / hits, encodeNanos / 1000.0 / hits));
+        redisMemory(name, raw, compressed);
+        assertTrue(compressedBytes < rawBytes);
+    }
+
+    private long decodeNanos(CacheCodec codec, List<byte[]> bytes, Class<?>[] types) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < bytes.size(); i++) {
+                codec.decode(bytes.get(i), types[i]);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    // 只统计压缩本身的耗时
+    private long encodeNanos(List<Object> values) {
+        List<byte[]> raw = new ArrayList<>(values.size());
+        values.forEach(value -> raw.add(plain.encode(value)));
+        raw.forEach(compressing::compress);
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            raw.forEach(compressing::compress);
+        }
+        return System.nanoTime() - start;
+    }
+
+    // 本机没有Redis时跳过
+    private void redisMemory(String name, List<byte[]> raw, List<byte[]> compressed) {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory("127.0.0.1", 6379);
+        factory.afterPropertiesSet();
+        try (RedisConnection connection = factory.getConnection()) {
+            long rawMemory = memoryUsage(connection, "benchmark:raw:", raw);
+            long compressedMemory = memoryUsage(connection, "benchmark:compressed:", compressed);
+            log.info(String.format("[%s] Redis MEMORY USAGE：不压缩%d字节，压缩%d字节，节省%.1f%%",
+                    name, rawMemory, compressedMemory, 100.0 * (rawMemory - compressedMemory) / rawMemory));
+        } catch (Exception e) {
+            log.info("[{}] 本机Redis不可用，跳过内存统计：{}", name, e.getMessage());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private static long memoryUsage(RedisConnection connection, String prefix, List<byte[]> values) {
+        long total = 0;
+        for (int i = 0; i < values.size(); i++) {
+            byte[] key = (prefix + i).getBytes(StandardCharsets.UTF_8);
+            // 写入后立即删除，中途出错也不在本机Redis中留下benchmark:*的key
+            try {
+                connection.set(key, values.get(i));
+                Long usage = connection.eval(MEMORY_USAGE, ReturnType.INTEGER, 1, key);
+                total += usage == null ? 0 : usage;
+            } finally {
+                connection.del(key);
+            }
+        }
+        return total;
+    }
+
+    static Shop shop(long id) {
+        StringBuilder images = new StringBuilder();
+        while (images.length() < 900) {
+            if (images.length() > 0) {
+                images.append(',');
+            }
+            images.append("https://qcloud.dpfile.com/pc/").append(RandomUtil.randomString(40)).append(".jpg");
+        }
+        return new Shop()
+                .setId(id)
+                .setName("103茶餐厅" + id)
+                .setTypeId(1L)
+                .setImages(images.toString())
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑" + id + "号")
+                .setX(120.149192 + id / 1e6)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setComments(3035)
+                .setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+    }
+
+    private static Blog blog(long id) {
+        String[] sentences = {
+                "生活就是一半烟火，一半清欢。", "这家店的环境很不错，服务也很周到，", "菜品分量足，味道正宗，",
+                "人均消费八十元左右，性价比很高。", "周末人比较多，建议提前预约。", "招牌菜一定要尝一尝！"
+        };
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 600) {
+            content.append(sentences[RandomUtil.randomInt(sentences.length)]);
+        }
+        return new Blog()
+                .setId(id)
+                .setShopId(id)
+                .setUserId(id)
+                .setTitle("无尽浪漫的夜晚丨在万花丛中摇晃着红酒杯" + id)
+                .setImages("/imgs/blogs/7/14/4771fefb-1a87-4252-816c-9f7ec41ffa4a.jpg,/imgs/blogs/4/10/2f07e3c9-ddce-482d-9ea7-c21450f8d7cd.jpg")
+                .setContent(content.toString())
+                .setLiked(RandomUtil.randomInt(1000))
+                .setComments(RandomUtil.randomInt(100));
+    }
+}
@@ -0,0 +1,142 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.hmdp.entity.CacheOutbox;
+import com.hmdp.mapper.CacheOutboxMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ClassName: CacheInvalidationOutboxTest
+ * Package: com.hmdp.utils
+ * Description: 发件箱的投递：删除失败按指数退避重试且不超过上限，首次删除成功后安排二次删除，二次删除成功后删除记录
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 10:30
+ * @Version 1.0
+ */
+public class CacheInvalidationOutboxTest {
+
+    private static final long RETRY_BASE_MILLIS = 500;
+    private static final long RETRY_MAX_MILLIS = 60_000;
+    private static final long SECOND_DELETE_MILLIS = 1000;
+
+    private CacheOutboxMapper mapper;
+    private CacheClient cacheClient;
+    private CacheInvalidationOutbox outbox;
+
+    @Before
+    public void setUp() {
+        mapper = mock(CacheOutboxMapper.class);
+        cacheClient = mock(CacheClient.class);
+        outbox = new CacheInvalidationOutbox(mapper, cacheClient, 200, SECOND_DELETE_MILLIS, RETRY_BASE_MILLIS, RETRY_MAX_MILLIS);
+    }
+
+    @After
+    public void tearDown() {
+        outbox.shutdown();
+    }
+
+    @Test
+    public void retriesWithBackoffWhenDeleteFails() {
+        doThrow(new IllegalStateException("redis down")).when(cacheClient).deleteBatch(anyCollection());
+        when(mapper.selectList(any())).thenReturn(Collections.singletonList(record(1L, CacheOutbox.STAGE_FIRST, 0)));
+
+        Map<String, Object> sets = pollAndCaptureUpdate();
+        assertEquals(1, sets.get("retries"));
+        assertDelay(RETRY_BASE_MILLIS, (LocalDateTime) sets.get("next_time"));
+        assertEquals(1L, outbox.stats().get("failures"));
+        // 删除失败的记录保留，等待下次重试
+        verify(mapper, never()).deleteBatchIds(anyCollection());
+    }
+
+    @Test
+    public void backoffIsCapped() {
+        doThrow(new IllegalStateException("redis down")).when(cacheClient).deleteBatch(anyCollection());
+        when(mapper.selectList(any())).thenReturn(Collections.singletonList(record(1L, CacheOutbox.STAGE_FIRST, 3)));
+        Map<String, Object> sets = pollAndCaptureUpdate();
+        assertEquals(4, sets.get("retries"));
+        assertDelay(RETRY_BASE_MILLIS << 3, (LocalDateTime) sets.get("next_time"));
+
+        // 重试次数很大时延迟为上限
+        tearDown();
+        setUp();
+        doThrow(new IllegalStateException("redis down")).when(cacheClient).deleteBatch(anyCollection());
+        when(mapper.selectList(any())).thenReturn(Collections.singletonList(record(1L, CacheOutbox.STAGE_FIRST, 30)));
+        sets = pollAndCaptureUpdate();
+        assertEquals(31, sets.get("retries"));
+        assertDelay(RETRY_MAX_MILLIS, (LocalDateTime) sets.get("next_time"));
+    }
+
+    @Test
+    public void schedulesSecondDeleteAfterFirstSucceeds() {
+        when(mapper.selectList(any())).thenReturn(Collections.singletonList(record(1L, CacheOutbox.STAGE_FIRST, 2)));
+        Map<String, Object> sets = pollAndCaptureUpdate();
+        verify(cacheClient).deleteBatch(Collections.singleton("cache:shop:1"));
+        assertEquals(CacheOutbox.STAGE_SECOND, sets.get("stage"));
+        // 进入二次删除后重试次数清零
+        assertEquals(0, sets.get("retries"));
+        assertDelay(SECOND_DELETE_MILLIS, (LocalDateTime) sets.get("next_time"));
+        verify(mapper, never()).deleteBatchIds(anyCollection());
+    }
+
+    @Test
+    public void removesRecordAfterSecondDelete() {
+        when(mapper.selectList(any())).thenReturn(Collections.singletonList(record(1L, CacheOutbox.STAGE_SECOND, 0)));
+        outbox.poll();
+        verify(mapper, timeout(2000)).deleteBatchIds(Collections.singletonList(1L));
+        verify(cacheClient).deleteBatch(Collections.singleton("cache:shop:1"));
+        verify(mapper, never()).update(isNull(), any());
+    }
+
+    private Map<String, Object> pollAndCaptureUpdate() {
+        outbox.poll();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<UpdateWrapper<CacheOutbox>> captor = ArgumentCaptor.forClass(UpdateWrapper.class);
+        verify(mapper, timeout(2000)).update(isNull(), captor.capture());
+        return sets(captor.getValue());
+    }
+
+    /**
+     * 取出UpdateWrapper中set的列和值，sqlSet形如 retries=#{ew.paramNameValuePairs.MPGENVAL1},...
+     */
+    private static Map<String, Object> sets(UpdateWrapper<CacheOutbox> wrapper) {
+        Map<String, Object> sets = new HashMap<>();
+        for (String set : wrapper.getSqlSet().split(",")) {
+            String[] parts = set.split("=", 2);
+            String param = parts[1].substring(parts[1].lastIndexOf('.') + 1, parts[1].length() - 1);
+            sets.put(parts[0], wrapper.getParamNameValuePairs().get(param));
+        }
+        return sets;
+    }
+
+    private static void assertDelay(long expectedMillis, LocalDateTime nextTime) {
+        long millis = Duration.between(LocalDateTime.now(), nextTime).toMillis();
+        assertTrue("delay=" + millis, millis > expectedMillis - 1000 && millis <= expectedMillis);
+    }
+
+    private static CacheOutbox record(long id, int stage, int retries) {
+        return new CacheOutbox().setId(id).setCacheKey("cache:shop:" + id).setStage(stage).setRetries(retries)
+                .setNextTime(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,126 @@
+package com.hmdp.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: CacheRebuildSchedulerTest
+ * Package: com.hmdp.utils
+ * Description: 重建任务按key去重、队列满时拒绝、超时后丢弃查询结果，以及失败和超时时都会执行收尾
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 10:20
+ * @Version 1.0
+ */
+public class CacheRebuildSchedulerTest {
+
+    private CacheRebuildScheduler scheduler;
+
+    @After
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void deduplicatesPendingKey() throws Exception {
+        scheduler = new CacheRebuildScheduler(2, 10, 5000, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicReference<String> written = new AtomicReference<>();
+        assertTrue(scheduler.submit("cache:shop:1", () -> {
+            await(release);
+            return "shop";
+        }, written::set, finished::countDown));
+        assertTrue(scheduler.isPending("cache:shop:1"));
+        // 同一个key已有待执行的任务，不再提交
+        assertFalse(scheduler.submit("cache:shop:1", () -> "other", written::set, () -> { }));
+        assertEquals(1L, scheduler.stats().get("deduplicated"));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals("shop", written.get());
+        assertFalse(scheduler.isPending("cache:shop:1"));
+        // 执行完后可以再次提交
+        CountDownLatch again = new CountDownLatch(1);
+        assertTrue(scheduler.submit("cache:shop:1", () -> "shop", written::set, again::countDown));
+        assertTrue(again.await(5, TimeUnit.SECONDS));
+        assertEquals(2L, scheduler.stats().get("succeeded"));
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception {
+        scheduler = new CacheRebuildScheduler(1, 1, 5000, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        assertTrue(scheduler.submit("cache:shop:1", () -> {
+            await(release);
+            return "shop";
+        }, data -> { }, finished::countDown));
+        assertTrue(scheduler.submit("cache:shop:2", () -> "shop", data -> { }, finished::countDown));
+        AtomicInteger onFinish = new AtomicInteger();
+        assertFalse(scheduler.submit("cache:shop:3", () -> "shop", data -> { }, onFinish::incrementAndGet));
+        // 被拒绝的key不占用去重标记，未被接受的任务不执行收尾
+        assertFalse(scheduler.isPending("cache:shop:3"));
+        assertEquals(1L, scheduler.stats().get("rejected"));
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(0, onFinish.get());
+    }
+
+    @Test
+    public void discardsResultAfterTimeout() throws Exception {
+        scheduler = new CacheRebuildScheduler(1, 10, 100, 1000);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicReference<String> written = new AtomicReference<>();
+        AtomicLong remaining = new AtomicLong();
+        assertTrue(scheduler.submit("cache:shop:1", () -> {
+            remaining.set(CacheRebuildScheduler.remainingMillis());
+            // 忽略中断、一直执行到超时之后才返回的查询
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+            while (System.nanoTime() < end) {
+                Thread.interrupted();
+            }
+            return "late";
+        }, written::set, finished::countDown));
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertNull("超时后返回的结果不应写入缓存", written.get());
+        assertTrue(remaining.get() > 0 && remaining.get() <= 100);
+        assertEquals(-1, CacheRebuildScheduler.remainingMillis());
+        assertEquals(1L, scheduler.stats().get("timedOut"));
+        assertEquals(1L, scheduler.stats().get("failed"));
+        assertFalse(scheduler.isPending("cache:shop:1"));
+    }
+
+    @Test
+    public void runsOnFinishAfterFailure() throws Exception {
+        scheduler = new CacheRebuildScheduler(1, 10, 5000, 1000);
+        CountDownLatch finished = new CountDownLatch(1);
+        assertTrue(scheduler.submit("cache:shop:1", () -> {
+            throw new IllegalStateException("db down");
+        }, data -> { }, finished::countDown));
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1L, scheduler.stats().get("failed"));
+        assertFalse(scheduler.isPending("cache:shop:1"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
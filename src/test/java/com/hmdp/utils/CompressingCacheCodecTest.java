@@ -0,0 +1,42 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: CompressingCacheCodecTest
+ * Package: com.hmdp.utils
+ * Description: 压缩编码的往返：超过阈值的值压缩后可以还原，低于阈值不压缩，未压缩的旧值仍可读取
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 11:00
+ * @Version 1.0
+ */
+public class CompressingCacheCodecTest {
+
+    private final CacheCodec plain = new JsonCacheCodec();
+    private final CompressingCacheCodec compressing = new CompressingCacheCodec(new JsonCacheCodec(), 512, 1);
+
+    @Test
+    public void roundTrip() {
+        Shop shop = CacheCompressionBenchmarkTest.shop(1L);
+        byte[] bytes = compressing.encode(shop);
+        assertEquals(CompressingCacheCodec.MAGIC, bytes[0]);
+        assertEquals(shop, compressing.decode(bytes, Shop.class));
+        // 未压缩的旧值仍可读取
+        assertEquals(shop, compressing.decode(plain.encode(shop), Shop.class));
+        // 低于阈值不压缩
+        byte[] small = compressing.encode(new Shop().setId(2L).setName("小店"));
+        assertTrue(small[0] != CompressingCacheCodec.MAGIC);
+        long expireMillis = System.currentTimeMillis();
+        LogicalValue<Shop> logical = compressing.decodeWithExpire(compressing.encodeWithExpire(shop, expireMillis), Shop.class);
+        assertEquals(shop, logical.getData());
+        assertEquals(expireMillis, logical.getExpireMillis());
+        byte[] raw = plain.encode(shop);
+        assertArrayEquals(raw, compressing.decompress(compressing.compress(raw)));
+    }
+}
@@ -0,0 +1,108 @@
+package com.hmdp.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: HotKeyDetectorTest
+ * Package: com.hmdp.utils
+ * Description: 热点key的晋升、本地副本、衰减降级和数量上限，以及Count-Min Sketch各行哈希相互独立、抽样记录的估计值
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 10:10
+ * @Version 1.0
+ */
+public class HotKeyDetectorTest {
+
+    private static final long THRESHOLD = 100;
+
+    @Test
+    public void promotesKeyAtThreshold() {
+        HotKeyDetector detector = detector(10, 1);
+        for (int i = 0; i < THRESHOLD - 1; i++) {
+            detector.record("cache:shop:1");
+        }
+        assertFalse(detector.isHot("cache:shop:1"));
+        // 未晋升的key不保存本地副本
+        detector.put("cache:shop:1", "shop");
+        assertNull(detector.get("cache:shop:1"));
+
+        detector.record("cache:shop:1");
+        assertTrue(detector.isHot("cache:shop:1"));
+        detector.put("cache:shop:1", "shop");
+        assertEquals("shop", detector.get("cache:shop:1"));
+        assertEquals(1, detector.getHits());
+        assertFalse(detector.isHot("cache:shop:2"));
+    }
+
+    @Test
+    public void demotesAfterDecay() {
+        HotKeyDetector detector = detector(10, 1);
+        for (int i = 0; i < THRESHOLD; i++) {
+            detector.record("cache:shop:1");
+        }
+        detector.put("cache:shop:1", "shop");
+        // 减半后仍不低于阈值的一半，保持热点
+        detector.decay();
+        assertTrue(detector.isHot("cache:shop:1"));
+        detector.decay();
+        assertFalse(detector.isHot("cache:shop:1"));
+        assertNull(detector.get("cache:shop:1"));
+        assertTrue(detector.hotKeys().isEmpty());
+    }
+
+    @Test
+    public void limitsHotKeys() {
+        HotKeyDetector detector = detector(2, 1);
+        for (int key = 0; key < 5; key++) {
+            for (int i = 0; i < THRESHOLD; i++) {
+                detector.record("cache:shop:" + key);
+            }
+        }
+        assertEquals(2, detector.hotKeys().size());
+        assertTrue(detector.isHot("cache:shop:0"));
+        assertFalse(detector.isHot("cache:shop:4"));
+    }
+
+    @Test
+    public void sampledRecordingKeepsEstimate() {
+        HotKeyDetector detector = detector(10, 8);
+        for (int i = 0; i < 80 * THRESHOLD; i++) {
+            detector.record("cache:shop:1");
+        }
+        assertTrue(detector.isHot("cache:shop:1"));
+        long estimate = (Long) detector.hotKeys().get(0).get("estimate");
+        // 抽中约1/8，每次加8，估计值在真实次数附近
+        assertTrue("estimate=" + estimate, estimate > 60 * THRESHOLD && estimate < 100 * THRESHOLD);
+    }
+
+    @Test
+    public void sketchRowsAreIndependent() {
+        CountMinSketch sketch = new CountMinSketch(4096);
+        // "Aa"与"BB"的hashCode相同，各行独立哈希时不会在所有行都冲突
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        for (int i = 0; i < 1000; i++) {
+            sketch.incrementAndEstimate("Aa");
+        }
+        assertEquals(1000, sketch.estimate("Aa"));
+        assertEquals(0, sketch.estimate("BB"));
+        sketch.decay();
+        assertEquals(500, sketch.estimate("Aa"));
+        // 估计值只会偏大
+        for (int i = 0; i < 10_000; i++) {
+            sketch.incrementAndEstimate("key:" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(sketch.estimate("key:" + i) >= 1);
+        }
+        assertTrue(sketch.estimate("Aa") >= 500);
+    }
+
+    private static HotKeyDetector detector(int maxKeys, int sampleEvery) {
+        return new HotKeyDetector(true, THRESHOLD, maxKeys, 60, 4096, sampleEvery);
+    }
+}
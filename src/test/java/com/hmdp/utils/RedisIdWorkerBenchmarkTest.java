@@ -0,0 +1,118 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ClassName: RedisIdWorkerBenchmarkTest
+ * Package: com.hmdp.utils
+ * Description: id生成器的吞吐量，用模拟网络延迟的内存计数器对比逐个INCR和号段预取，本机6379端口有Redis时再用真实Redis测一次，
+ * 测完删除生成的计数器key。只输出结果，不断言快慢。正确性见RedisIdWorkerTest。
+ * 默认的mvn test不运行，用 -Pload-test 或 -Dtest=RedisIdWorkerBenchmarkTest 运行
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/18 23:55
+ * @Version 1.0
+ */
+@Slf4j
+public class RedisIdWorkerBenchmarkTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 20_000;
+    // 逐个INCR的吞吐量低，少生成一些
+    private static final int IDS_PER_THREAD_NO_PREFETCH = 1_000;
+    // 模拟一次Redis往返的耗时
+    private static final long SIMULATED_RTT_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Test
+    public void benchmark() throws Exception {
+        long perId = run("逐个INCR（step=1）", new RedisIdWorker(memoryIncrBy(SIMULATED_RTT_NANOS),
+                System::currentTimeMillis, ZONE, 1, 5000), IDS_PER_THREAD_NO_PREFETCH);
+        long segment = run("号段预取（step=1000）", new RedisIdWorker(memoryIncrBy(SIMULATED_RTT_NANOS),
+                System::currentTimeMillis, ZONE, 1000, 5000), IDS_PER_THREAD);
+        log.info("号段预取是逐个INCR的{}倍", segment / Math.max(1, perId));
+        LettuceConnectionFactory factory = new LettuceConnectionFactory("127.0.0.1", 6379);
+        factory.afterPropertiesSet();
+        // 记录用过的计数器key，测完删除，不在本机Redis中留下icr:benchmark*的key
+        Set<String> keys = ConcurrentHashMap.newKeySet();
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+        try {
+            template.hasKey("benchmark");
+            run("真实Redis，逐个INCR", redisWorker(template, keys, 1), IDS_PER_THREAD_NO_PREFETCH);
+            run("真实Redis，号段预取", redisWorker(template, keys, 1000), IDS_PER_THREAD);
+        } catch (Exception e) {
+            log.info("本机Redis不可用，跳过真实Redis测试：{}", e.getMessage());
+        } finally {
+            if (!keys.isEmpty()) {
+                template.delete(keys);
+            }
+            factory.destroy();
+        }
+    }
+
+    // 与生产环境相同的INCRBY，额外记录访问的key
+    private static RedisIdWorker redisWorker(StringRedisTemplate template, Set<String> keys, long step) {
+        return new RedisIdWorker((key, delta) -> {
+            keys.add(key);
+            return template.opsForValue().increment(key, delta);
+        }, System::currentTimeMillis, ZoneId.systemDefault(), step, 5000);
+    }
+
+    // 多线程生成id，校验全局唯一、每个线程内单调递增，返回每秒生成数
+    private long run(String name, RedisIdWorker worker, int idsPerThread) throws InterruptedException {
+        String prefix = "benchmark" + System.nanoTime();
+        Set<Long> ids = ConcurrentHashMap.newKeySet(THREADS * idsPerThread);
+        CountDownLatch latch = new CountDownLatch(THREADS);
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(() -> {
+                long last = Long.MIN_VALUE;
+                for (int i = 0; i < idsPerThread; i++) {
+                    long id = worker.nextId(prefix);
+                    if (id <= last || !ids.add(id)) {
+                        errors.incrementAndGet();
+                    }
+                    last = id;
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        long nanos = System.nanoTime() - start;
+        worker.shutdown();
+        long total = (long) THREADS * idsPerThread;
+        long throughput = total * 1_000_000_000L / nanos;
+        log.info("[{}] {}个线程共生成{}个id，耗时{}ms，{}个/秒",
+                name, THREADS, total, TimeUnit.NANOSECONDS.toMillis(nanos), throughput);
+        assertEquals(0, errors.get());
+        assertEquals(total, ids.size());
+        return throughput;
+    }
+
+    private static BiFunction<String, Long, Long> memoryIncrBy(long rttNanos) {
+        Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+        return (key, delta) -> {
+            if (rttNanos > 0) {
+                LockSupport.parkNanos(rttNanos);
+            }
+            return counters.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(delta);
+        };
+    }
+}
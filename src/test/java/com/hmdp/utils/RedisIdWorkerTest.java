@@ -0,0 +1,99 @@
+package com.hmdp.utils;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ClassName: RedisIdWorkerTest
+ * Package: com.hmdp.utils
+ * Description: id生成器的正确性：多线程号段预取时全局唯一、线程内单调递增，允许范围内的时钟回拨，跨天重新计数
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 11:10
+ * @Version 1.0
+ */
+public class RedisIdWorkerTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 5_000;
+
+    @Test
+    public void concurrentIdsAreUniqueAndIncreasing() throws InterruptedException {
+        Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+        // 号段较小，生成期间多次预取
+        RedisIdWorker worker = new RedisIdWorker(
+                (key, delta) -> counters.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(delta),
+                System::currentTimeMillis, ZONE, 100, 5000);
+        Set<Long> ids = ConcurrentHashMap.newKeySet(THREADS * IDS_PER_THREAD);
+        CountDownLatch latch = new CountDownLatch(THREADS);
+        AtomicLong errors = new AtomicLong();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                new Thread(() -> {
+                    long last = Long.MIN_VALUE;
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        long id = worker.nextId("order");
+                        if (id <= last || !ids.add(id)) {
+                            errors.incrementAndGet();
+                        }
+                        last = id;
+                    }
+                    latch.countDown();
+                }).start();
+            }
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        } finally {
+            worker.shutdown();
+        }
+        assertEquals(0, errors.get());
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    public void clockRollbackWithinLimitKeepsIdsIncreasing() {
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        AtomicLong counter = new AtomicLong();
+        RedisIdWorker worker = new RedisIdWorker((key, delta) -> counter.addAndGet(delta), now::get, ZONE, 10, 5000);
+        long first = worker.nextId("order");
+        now.addAndGet(-3000);
+        long second = worker.nextId("order");
+        assertTrue(second > first);
+        // 回拨超过允许范围
+        now.addAndGet(-3000);
+        try {
+            worker.nextId("order");
+            fail("时钟回拨超过允许范围应当拒绝生成");
+        } catch (IllegalStateException expected) {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void dayRolloverRestartsSequence() {
+        // 2023-11-14 23:59:59 Asia/Shanghai
+        AtomicLong now = new AtomicLong(1699977599000L);
+        Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+        RedisIdWorker worker = new RedisIdWorker(
+                (key, delta) -> counters.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(delta),
+                now::get, ZONE, 100, 5000);
+        long before = worker.nextId("order");
+        now.addAndGet(1000);
+        long after = worker.nextId("order");
+        assertTrue(after > before);
+        assertEquals(1L, after & 0xFFFFFFFFL);
+        assertTrue(counters.containsKey("icr:order:2023:11:14"));
+        assertTrue(counters.containsKey("icr:order:2023:11:15"));
+    }
+}
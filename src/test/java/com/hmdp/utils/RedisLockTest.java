@@ -0,0 +1,174 @@
+package com.hmdp.utils;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: RedisLockTest
+ * Package: com.hmdp.utils
+ * Description: 分布式锁的持有者校验、重入、fencing token递增、看门狗续期与续期失败、释放通知唤醒等待者。
+ * 使用内嵌Redis
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 10:40
+ * @Version 1.0
+ */
+public class RedisLockTest {
+
+    private static final String KEY = "lock:test:1";
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate template;
+
+    private RedisLock lock;
+
+    @BeforeClass
+    public static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        factory = new LettuceConnectionFactory("127.0.0.1", port);
+        factory.afterPropertiesSet();
+        template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+    }
+
+    @AfterClass
+    public static void stopRedis() throws IOException {
+        factory.destroy();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() {
+        template.delete(KEY);
+        template.delete(RedisLock.fenceKey(KEY));
+        lock = new RedisLock(template, 300);
+    }
+
+    @After
+    public void tearDown() {
+        lock.shutdown();
+    }
+
+    @Test
+    public void onlyOwnerCanRelease() throws Exception {
+        RedisLock.Lease lease = lock.tryLock(KEY);
+        assertNotNull(lease);
+        assertNull("其他线程不能获取", otherThread(() -> lock.tryLock(KEY)));
+        // 锁被删除（如租期已过）后由其他线程获取，原持有者释放时不能删掉别人的锁
+        template.delete(KEY);
+        RedisLock.Lease other = otherThread(() -> lock.tryLock(KEY));
+        assertNotNull(other);
+        lease.unlock();
+        assertTrue(template.hasKey(KEY));
+        other.unlock();
+        assertFalse(template.hasKey(KEY));
+    }
+
+    @Test
+    public void fencingTokensIncrease() {
+        RedisLock.Lease first = lock.tryLock(KEY);
+        first.unlock();
+        RedisLock.Lease second = lock.tryLock(KEY);
+        second.unlock();
+        assertTrue(second.getFencingToken() > first.getFencingToken());
+        // 计数器与锁在同一个slot
+        assertEquals("{lock:test:1}:fence", RedisLock.fenceKey(KEY));
+        assertEquals("lock:{shop}:1:fence", RedisLock.fenceKey("lock:{shop}:1"));
+    }
+
+    @Test
+    public void reentrantLockNeedsMatchingUnlocks() throws Exception {
+        RedisLock.Lease outer = lock.tryLock(KEY, 0, TimeUnit.MILLISECONDS, true);
+        RedisLock.Lease inner = lock.tryLock(KEY, 0, TimeUnit.MILLISECONDS, true);
+        assertNotNull(inner);
+        assertEquals(outer.getFencingToken(), inner.getFencingToken());
+        // 不允许重入时同一线程也获取不到
+        assertNull(lock.tryLock(KEY));
+        inner.unlock();
+        assertTrue(template.hasKey(KEY));
+        outer.unlock();
+        assertFalse(template.hasKey(KEY));
+    }
+
+    @Test
+    public void watchdogRenewsLease() throws Exception {
+        RedisLock.Lease lease = lock.tryLock(KEY);
+        // 持有时间远超租期，看门狗每1/3租期续期一次
+        Thread.sleep(1000);
+        assertTrue(lease.isHeld());
+        assertTrue(template.hasKey(KEY));
+        lease.unlock();
+        assertFalse(lease.isHeld());
+        assertFalse(template.hasKey(KEY));
+    }
+
+    @Test
+    public void renewalFailsAfterLosingOwnership() throws Exception {
+        RedisLock.Lease lease = lock.tryLock(KEY);
+        template.opsForHash().put(KEY, "owner", "someone-else");
+        long deadline = System.currentTimeMillis() + 2000;
+        while (lease.isHeld() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse("续期发现已不是持有者后不应再认为持有锁", lease.isHeld());
+        lease.unlock();
+        assertEquals("someone-else", template.opsForHash().get(KEY, "owner"));
+    }
+
+    @Test
+    public void releaseNotificationWakesWaiter() throws Exception {
+        RedisLock longLease = new RedisLock(template, 10_000);
+        try {
+            RedisLock.Lease lease = longLease.tryLock(KEY);
+            CompletableFuture<RedisLock.Lease> waiter = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return longLease.tryLock(KEY, 5, TimeUnit.SECONDS, false);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(waiter.isDone());
+            long start = System.currentTimeMillis();
+            lease.unlock();
+            // 本应由订阅释放频道的监听器调用
+            longLease.onReleased(KEY);
+            RedisLock.Lease acquired = waiter.get(5, TimeUnit.SECONDS);
+            assertNotNull(acquired);
+            // 不必等到原来的租期结束
+            assertTrue(System.currentTimeMillis() - start < 2000);
+            assertTrue(acquired.getFencingToken() > lease.getFencingToken());
+            acquired.unlock();
+        } finally {
+            longLease.shutdown();
+        }
+    }
+
+    private static <T> T otherThread(Supplier<T> action) throws Exception {
+        return CompletableFuture.supplyAsync(action).get(5, TimeUnit.SECONDS);
+    }
+}
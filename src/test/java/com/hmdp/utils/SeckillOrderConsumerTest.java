@@ -0,0 +1,208 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.IVoucherOrderService;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_DEAD_STREAM_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STREAMS_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ClassName: SeckillOrderConsumerTest
+ * Package: com.hmdp.utils
+ * Description: 订单消息流的消费：写库失败的消息留在待确认列表中，被认领后重新处理并确认删除，
+ * 投递次数达到上限的转入死信流，数据库拒绝的订单移除购买记录但不退回Redis库存。使用内嵌Redis
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 10:50
+ * @Version 1.0
+ */
+public class SeckillOrderConsumerTest {
+
+    private static final String GROUP = "order-group";
+    private static final String TAG = SeckillKeys.tag(1L);
+    private static final String STREAM = SeckillKeys.stream(TAG);
+    private static final long MAX_DELIVERIES = 2;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate template;
+
+    private IVoucherOrderService voucherOrderService;
+    private OrderTimeoutCanceller orderTimeoutCanceller;
+    private SeckillOrderConsumer consumer;
+    private boolean started;
+
+    @BeforeClass
+    public static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        factory = new LettuceConnectionFactory("127.0.0.1", port);
+        factory.afterPropertiesSet();
+        template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+    }
+
+    @AfterClass
+    public static void stopRedis() throws IOException {
+        factory.destroy();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() {
+        template.execute((RedisCallback<Object>) connection -> {
+            connection.flushAll();
+            return null;
+        });
+        voucherOrderService = mock(IVoucherOrderService.class);
+        orderTimeoutCanceller = mock(OrderTimeoutCanceller.class);
+        // 认领空闲时间为0，测试中调用reclaim即可认领全部待确认消息
+        consumer = new SeckillOrderConsumer(template, voucherOrderService, orderTimeoutCanceller,
+                1, 10, 20, 0, MAX_DELIVERIES);
+        template.opsForSet().add(SECKILL_STREAMS_KEY, STREAM);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (started) {
+            consumer.stop();
+        }
+    }
+
+    @Test
+    public void failedBatchIsRedeliveredByReclaim() throws Exception {
+        when(voucherOrderService.saveOrderBatch(anyList()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(Collections.emptyList());
+        addOrder(100L, 10L);
+        consumer.start();
+        started = true;
+        verify(voucherOrderService, timeout(5000)).saveOrderBatch(anyList());
+        consumer.stop();
+        started = false;
+        // 写库失败的消息没有确认，仍在待确认列表中
+        assertEquals(1L, pendingCount());
+        verify(orderTimeoutCanceller, never()).schedule(anyList());
+
+        consumer.reclaim();
+        verify(voucherOrderService, times(2)).saveOrderBatch(Collections.singletonList(order(100L, 10L)));
+        verify(orderTimeoutCanceller).schedule(Collections.singletonList(order(100L, 10L)));
+        // 重新处理成功后确认并删除
+        assertEquals(0L, pendingCount());
+        assertEquals(Long.valueOf(0), template.opsForStream().size(STREAM));
+        assertFalse(template.hasKey(SECKILL_DEAD_STREAM_KEY));
+    }
+
+    @Test
+    public void movesToDeadLetterAfterMaxDeliveries() {
+        when(voucherOrderService.saveOrderBatch(anyList())).thenThrow(new IllegalStateException("bad order"));
+        addOrder(100L, 10L);
+        readWithoutAck();
+
+        // 第1次投递后失败，认领时投递次数未到上限，重新处理仍然失败
+        consumer.reclaim();
+        verify(voucherOrderService).saveOrderBatch(anyList());
+        assertEquals(1L, pendingCount());
+        assertFalse(template.hasKey(SECKILL_DEAD_STREAM_KEY));
+
+        // 投递次数达到上限，不再处理，转入死信流
+        consumer.reclaim();
+        verify(voucherOrderService).saveOrderBatch(anyList());
+        assertEquals(0L, pendingCount());
+        assertEquals(Long.valueOf(0), template.opsForStream().size(STREAM));
+        List<MapRecord<String, Object, Object>> dead = template.opsForStream()
+                .range(SECKILL_DEAD_STREAM_KEY, Range.unbounded());
+        assertEquals(1, dead.size());
+        assertEquals("100", dead.get(0).getValue().get("id"));
+        assertEquals("10", dead.get(0).getValue().get("userId"));
+    }
+
+    @Test
+    public void rejectedOrdersReleaseBuyerOnly() {
+        // 数据库库存不足，拒绝用户11的订单
+        when(voucherOrderService.saveOrderBatch(anyList())).thenAnswer(invocation -> {
+            List<VoucherOrder> orders = invocation.getArgument(0);
+            return orders.stream().filter(order -> order.getUserId() == 11L).collect(Collectors.toList());
+        });
+        template.opsForValue().set(SeckillKeys.stock(TAG), "0");
+        template.opsForSet().add(SeckillKeys.buyers(TAG), "10", "11");
+        addOrder(100L, 10L);
+        addOrder(101L, 11L);
+        readWithoutAck();
+
+        consumer.reclaim();
+        // 只有保存成功的订单开始支付计时
+        verify(orderTimeoutCanceller).schedule(Collections.singletonList(order(100L, 10L)));
+        verify(orderTimeoutCanceller).schedule(anyList());
+        // 数据库中不存在的库存不退回Redis，否则下一个用户下单后会再次作废
+        assertEquals("0", template.opsForValue().get(SeckillKeys.stock(TAG)));
+        assertTrue(template.opsForSet().isMember(SeckillKeys.buyers(TAG), "10"));
+        assertFalse(template.opsForSet().isMember(SeckillKeys.buyers(TAG), "11"));
+        // 被拒绝的订单同样确认，不会再次投递
+        assertEquals(0L, pendingCount());
+        assertEquals(Long.valueOf(0), template.opsForStream().size(STREAM));
+    }
+
+    private static void addOrder(long orderId, long userId) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("id", String.valueOf(orderId));
+        fields.put("userId", String.valueOf(userId));
+        fields.put("voucherId", "1");
+        template.opsForStream().add(StreamRecords.newRecord().in(STREAM).ofMap(fields));
+    }
+
+    /**
+     * 模拟读取后宕机的消费者：创建消费者组并读取全部消息，不确认
+     */
+    private static void readWithoutAck() {
+        template.opsForStream().createGroup(STREAM, ReadOffset.from("0"), GROUP);
+        template.opsForStream().read(Consumer.from(GROUP, "crashed"), StreamReadOptions.empty().count(10),
+                StreamOffset.create(STREAM, ReadOffset.lastConsumed()));
+    }
+
+    private static long pendingCount() {
+        return template.opsForStream().pending(STREAM, GROUP).getTotalPendingMessages();
+    }
+
+    private static VoucherOrder order(long orderId, long userId) {
+        return new VoucherOrder().setId(orderId).setUserId(userId).setVoucherId(1L);
+    }
+}
@@ -0,0 +1,153 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.ShopGridIndexTest.MIN_X;
+import static com.hmdp.utils.ShopGridIndexTest.MIN_Y;
+import static com.hmdp.utils.ShopGridIndexTest.PAGE_SIZE;
+import static com.hmdp.utils.ShopGridIndexTest.RADIUS_METERS;
+import static com.hmdp.utils.ShopGridIndexTest.SPAN;
+import static com.hmdp.utils.ShopGridIndexTest.TYPES;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ClassName: ShopGridIndexBenchmarkTest
+ * Package: com.hmdp.utils
+ * Description: 网格索引的建立耗时和查询延迟；本机6379端口有Redis时，用同样的数据对比Redis GEORADIUS的延迟和结果。
+ * 正确性见ShopGridIndexTest。默认的mvn test不运行，用 -Pload-test 或 -Dtest=ShopGridIndexBenchmarkTest 运行
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 07:20
+ * @Version 1.0
+ */
+@Slf4j
+public class ShopGridIndexBenchmarkTest {
+
+    private static final int SHOPS = 100_000;
+    private static final int QUERIES = 2_000;
+    private static final String BENCHMARK_KEY = "benchmark:shop:geo:";
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void benchmark() {
+        ShopGridIndex index = ShopGridIndexTest.newIndex();
+        ShopGridIndex.Points[] points = ShopGridIndexTest.randomPoints(random, SHOPS);
+        long start = System.nanoTime();
+        ShopGridIndexTest.install(index, points);
+        log.info("网格索引：{}家商铺，{}个格子，约{}KB，建立耗时{}ms", index.size(), index.cells(),
+                index.bytes() / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        double[][] queries = randomQueries();
+        // 预热JIT；直接查询最近的一页，不经过分页快照，与Redis按同样的坐标对比
+        for (double[] q : queries) {
+            index.nearest((long) q[0], q[1], q[2], PAGE_SIZE, RADIUS_METERS);
+        }
+        long[] latencies = new long[QUERIES];
+        List<Map<Long, Double>> local = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            long begin = System.nanoTime();
+            local.add(index.nearest((long) queries[i][0], queries[i][1], queries[i][2], PAGE_SIZE, RADIUS_METERS));
+            latencies[i] = System.nanoTime() - begin;
+        }
+        report("网格索引", latencies);
+
+        LettuceConnectionFactory factory = new LettuceConnectionFactory("127.0.0.1", 6379);
+        factory.afterPropertiesSet();
+        try {
+            StringRedisTemplate template = new StringRedisTemplate(factory);
+            template.afterPropertiesSet();
+            template.hasKey(BENCHMARK_KEY);
+            loadRedis(template, points);
+            RedisGeoCommands.GeoRadiusCommandArgs args = RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
+                    .includeDistance().sortAscending().limit(PAGE_SIZE);
+            for (double[] q : queries) {
+                radius(template, q, args);
+            }
+            for (int i = 0; i < QUERIES; i++) {
+                long begin = System.nanoTime();
+                List<GeoResult<RedisGeoCommands.GeoLocation<String>>> results = radius(template, queries[i], args);
+                latencies[i] = System.nanoTime() - begin;
+                // 两种方式按距离排序的结果一致，Redis的坐标经过geohash编码，距离误差在1米以内
+                double[] expected = local.get(i).values().stream().mapToDouble(Double::doubleValue).toArray();
+                assertEquals(expected.length, results.size());
+                for (int j = 0; j < expected.length; j++) {
+                    assertEquals(expected[j], results.get(j).getDistance().getValue(), 1.0);
+                }
+            }
+            report("Redis GEORADIUS", latencies);
+        } catch (Exception e) {
+            log.info("本机Redis不可用，跳过Redis GEO对比：{}", e.getMessage());
+        } finally {
+            try {
+                StringRedisTemplate template = new StringRedisTemplate(factory);
+                template.afterPropertiesSet();
+                for (int t = 0; t < TYPES; t++) {
+                    template.delete(BENCHMARK_KEY + t);
+                }
+            } catch (Exception ignored) {
+                // Redis不可用
+            }
+            factory.destroy();
+        }
+    }
+
+    private double[][] randomQueries() {
+        double[][] queries = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new double[]{random.nextInt(TYPES), MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN};
+        }
+        return queries;
+    }
+
+    private static void loadRedis(StringRedisTemplate template, ShopGridIndex.Points[] points) {
+        for (int t = 0; t < points.length; t++) {
+            String key = BENCHMARK_KEY + t;
+            template.delete(key);
+            ShopGridIndex.Points typePoints = points[t];
+            for (int from = 0; from < typePoints.size; from += 1000) {
+                Map<String, Point> batch = new HashMap<>();
+                for (int i = from; i < Math.min(from + 1000, typePoints.size); i++) {
+                    batch.put(String.valueOf(typePoints.ids[i]), new Point(typePoints.xs[i], typePoints.ys[i]));
+                }
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    ((StringRedisConnection) connection).geoAdd(key, batch);
+                    return null;
+                });
+            }
+        }
+    }
+
+    private static List<GeoResult<RedisGeoCommands.GeoLocation<String>>> radius(
+            StringRedisTemplate template, double[] q, RedisGeoCommands.GeoRadiusCommandArgs args) {
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results = template.opsForGeo().radius(BENCHMARK_KEY + (long) q[0],
+                new Circle(new Point(q[1], q[2]), new Distance(RADIUS_METERS, RedisGeoCommands.DistanceUnit.METERS)), args);
+        return results == null ? new ArrayList<>() : results.getContent();
+    }
+
+    private static void report(String name, long[] latencies) {
+        long total = Arrays.stream(latencies).sum();
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        log.info(String.format("[%s] %d次附近%d家查询，%.0f次/秒，p50 %.1fus，p99 %.1fus", name, sorted.length, PAGE_SIZE,
+                sorted.length * 1e9 / total, sorted[sorted.length / 2] / 1e3, sorted[sorted.length * 99 / 100] / 1e3));
+    }
+}
@@ -0,0 +1,186 @@
+package com.hmdp.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: ShopGridIndexTest
+ * Package: com.hmdp.utils
+ * Description: 网格索引的k近邻、半径查询与暴力计算的结果对比，增量更新，以及分页快照
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 11:20
+ * @Version 1.0
+ */
+public class ShopGridIndexTest {
+
+    static final int TYPES = 10;
+    static final int PAGE_SIZE = 10;
+    static final double RADIUS_METERS = 5000;
+    // 杭州附近约50公里见方的范围
+    static final double MIN_X = 119.9, MIN_Y = 30.05, SPAN = 0.5;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void matchesBruteForce() {
+        ShopGridIndex index = newIndex();
+        ShopGridIndex.Points[] points = randomPoints(20_000);
+        install(index, points);
+        for (int q = 0; q < 200; q++) {
+            long typeId = random.nextInt(TYPES);
+            double x = MIN_X + random.nextDouble() * SPAN, y = MIN_Y + random.nextDouble() * SPAN;
+            assertSame(bruteForce(points[(int) typeId], x, y, 10, Double.POSITIVE_INFINITY),
+                    index.nearest(typeId, x, y, 10, Double.POSITIVE_INFINITY));
+            assertSame(bruteForce(points[(int) typeId], x, y, 50, 2000),
+                    index.radius(typeId, x, y, 2000, 50));
+        }
+        // 查询点在所有商铺的范围之外
+        assertSame(bruteForce(points[0], 121.5, 31.2, 3, Double.POSITIVE_INFINITY),
+                index.nearest(0L, 121.5, 31.2, 3, Double.POSITIVE_INFINITY));
+        assertTrue(index.nearest(0L, 121.5, 31.2, 3, 1000).isEmpty());
+        assertTrue(index.nearest(TYPES + 1L, MIN_X, MIN_Y, 3, Double.POSITIVE_INFINITY).isEmpty());
+    }
+
+    @Test
+    public void incrementalUpdates() {
+        ShopGridIndex index = newIndex();
+        install(index, randomPoints(1_000));
+        // 新增：出现在该类型的最近位置
+        index.onMessage("900001:3:120.1:30.2");
+        assertEquals(Long.valueOf(900001), index.nearest(3L, 120.1, 30.2, 1, 100).keySet().iterator().next());
+        // 修改类型：从原类型中消失
+        index.onMessage("900001:4:120.1:30.2");
+        assertFalse(index.nearest(3L, 120.1, 30.2, 1, 100).containsKey(900001L));
+        assertTrue(index.nearest(4L, 120.1, 30.2, 1, 100).containsKey(900001L));
+        // 移动位置
+        index.onMessage("900001:4:120.3:30.4");
+        assertFalse(index.nearest(4L, 120.1, 30.2, 1, 100).containsKey(900001L));
+        assertTrue(index.nearest(4L, 120.3, 30.4, 1, 100).containsKey(900001L));
+        // 没有坐标：删除
+        index.onMessage("900001");
+        assertFalse(index.nearest(4L, 120.3, 30.4, 1, 100).containsKey(900001L));
+        assertEquals(1_000, index.size());
+        // 新类型
+        index.onMessage("900002:99:120.1:30.2");
+        assertEquals(1, index.nearest(99L, 0, 0, 5, Double.POSITIVE_INFINITY).size());
+    }
+
+    @Test
+    public void randomUpdatesMatchBruteForce() {
+        ShopGridIndex index = newIndex();
+        ShopGridIndex.Points[] points = randomPoints(2_000);
+        install(index, points);
+        // 随机新增、移动、换类型、删除，之后与按最终坐标暴力计算的结果对比
+        Map<Long, double[]> shops = new HashMap<>();
+        for (int t = 0; t < TYPES; t++) {
+            for (int i = 0; i < points[t].size; i++) {
+                shops.put(points[t].ids[i], new double[]{t, points[t].xs[i], points[t].ys[i]});
+            }
+        }
+        for (int i = 0; i < 5_000; i++) {
+            long id = 1 + random.nextInt(3_000);
+            if (random.nextInt(10) == 0) {
+                index.onMessage(String.valueOf(id));
+                shops.remove(id);
+            } else {
+                double[] shop = {random.nextInt(TYPES), MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN};
+                index.onMessage(id + ":" + (long) shop[0] + ":" + shop[1] + ":" + shop[2]);
+                shops.put(id, shop);
+            }
+        }
+        assertEquals(shops.size(), index.size());
+        ShopGridIndex.Points[] expected = new ShopGridIndex.Points[TYPES];
+        for (int t = 0; t < TYPES; t++) {
+            expected[t] = new ShopGridIndex.Points(1);
+        }
+        shops.forEach((id, shop) -> expected[(int) shop[0]].add(id, shop[1], shop[2]));
+        for (int q = 0; q < 200; q++) {
+            long typeId = random.nextInt(TYPES);
+            double x = MIN_X + random.nextDouble() * SPAN, y = MIN_Y + random.nextDouble() * SPAN;
+            assertSame(bruteForce(expected[(int) typeId], x, y, 20, Double.POSITIVE_INFINITY),
+                    index.nearest(typeId, x, y, 20, Double.POSITIVE_INFINITY));
+            assertSame(bruteForce(expected[(int) typeId], x, y, 50, 2000),
+                    index.radius(typeId, x, y, 2000, 50));
+        }
+    }
+
+    @Test
+    public void pagesComeFromOneSnapshot() {
+        ShopGridIndex index = newIndex();
+        install(index, randomPoints(20_000));
+        Map<Long, Double> first = index.nearby(3L, 120.1, 30.2, 0, PAGE_SIZE);
+        Map<Long, Double> second = index.nearby(3L, 120.1, 30.2, PAGE_SIZE, PAGE_SIZE);
+        assertEquals(PAGE_SIZE, first.size());
+        // 翻页前最近的位置新增了商铺，第二页仍接着第一页，没有重复也没有遗漏
+        index.onMessage("900001:3:120.1:30.2");
+        assertEquals(second, index.nearby(3L, 120.1, 30.2, PAGE_SIZE, PAGE_SIZE));
+        // 相近的坐标共用快照
+        assertEquals(first, index.nearby(3L, 120.10001, 30.20001, 0, PAGE_SIZE));
+        Map<Long, Double> both = index.nearest(3L, 120.1, 30.2, 2 * PAGE_SIZE + 1, RADIUS_METERS);
+        assertTrue(both.containsKey(900001L));
+        both.remove(900001L);
+        Map<Long, Double> pages = new LinkedHashMap<>(first);
+        pages.putAll(second);
+        assertEquals(new ArrayList<>(both.keySet()), new ArrayList<>(pages.keySet()));
+    }
+
+    static ShopGridIndex newIndex() {
+        return new ShopGridIndex(null, null, true, 1000, 0.01, RADIUS_METERS, 500, 60_000, 0.0001, 1000);
+    }
+
+    private ShopGridIndex.Points[] randomPoints(int shops) {
+        return randomPoints(random, shops);
+    }
+
+    static ShopGridIndex.Points[] randomPoints(Random random, int shops) {
+        ShopGridIndex.Points[] points = new ShopGridIndex.Points[TYPES];
+        for (int t = 0; t < TYPES; t++) {
+            points[t] = new ShopGridIndex.Points(shops / TYPES);
+        }
+        for (int i = 1; i <= shops; i++) {
+            points[i % TYPES].add(i, MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN);
+        }
+        return points;
+    }
+
+    static void install(ShopGridIndex index, ShopGridIndex.Points[] points) {
+        Map<Long, ShopGridIndex.Grid> grids = new HashMap<>();
+        for (int t = 0; t < points.length; t++) {
+            grids.put((long) t, index.build(points[t]));
+        }
+        index.install(grids);
+    }
+
+    private static List<Map.Entry<Long, Double>> bruteForce(ShopGridIndex.Points points, double x, double y, int k, double maxMeters) {
+        List<Map.Entry<Long, Double>> all = new ArrayList<>();
+        for (int i = 0; i < points.size; i++) {
+            double d = ShopGridIndex.distance(x, y, points.xs[i], points.ys[i]);
+            if (d <= maxMeters) {
+                all.add(new HashMap.SimpleEntry<>(points.ids[i], d));
+            }
+        }
+        all.sort(Map.Entry.comparingByValue());
+        return all.subList(0, Math.min(k, all.size()));
+    }
+
+    private static void assertSame(List<Map.Entry<Long, Double>> expected, Map<Long, Double> actual) {
+        assertEquals(expected.size(), actual.size());
+        int i = 0;
+        for (Map.Entry<Long, Double> entry : actual.entrySet()) {
+            assertEquals(expected.get(i).getKey(), entry.getKey());
+            assertEquals(expected.get(i).getValue(), entry.getValue(), 1e-6);
+            i++;
+        }
+    }
+}
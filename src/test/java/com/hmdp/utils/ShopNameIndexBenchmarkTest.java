@@ -0,0 +1,70 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.hmdp.utils.ShopNameIndexTest.PAGE_SIZE;
+import static com.hmdp.utils.ShopNameIndexTest.newIndex;
+import static com.hmdp.utils.ShopNameIndexTest.queries;
+import static com.hmdp.utils.ShopNameIndexTest.randomDocs;
+import static com.hmdp.utils.ShopNameIndexTest.scan;
+
+/**
+ * ClassName: ShopNameIndexBenchmarkTest
+ * Package: com.hmdp.utils
+ * Description: 名称倒排索引的内存占用和查询延迟，与逐条匹配全部商铺对比。正确性见ShopNameIndexTest。
+ * 默认的mvn test不运行，用 -Pload-test 或 -Dtest=ShopNameIndexBenchmarkTest 运行
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 08:10
+ * @Version 1.0
+ */
+@Slf4j
+public class ShopNameIndexBenchmarkTest {
+
+    private static final int SHOPS = 100_000;
+    private static final int QUERIES = 2_000;
+    private final Random random = new Random(7);
+
+    @Test
+    public void benchmark() {
+        Map<Long, String[]> docs = randomDocs(random, SHOPS);
+        long start = System.nanoTime();
+        ShopNameIndex index = newIndex(docs, 1_000_000);
+        Map<String, Object> stats = index.stats();
+        log.info("名称索引：{}家商铺，{}个词项，{}条倒排记录，约{}KB，建立耗时{}ms", stats.get("docs"), stats.get("terms"),
+                stats.get("postings"), index.bytes() / 1024, (System.nanoTime() - start) / 1_000_000);
+        List<String> queries = queries(random, docs, QUERIES);
+        for (String query : queries) {
+            index.search(query, 0, PAGE_SIZE);
+        }
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long begin = System.nanoTime();
+            index.search(queries.get(i), 0, PAGE_SIZE);
+            latencies[i] = System.nanoTime() - begin;
+        }
+        report("倒排索引", latencies);
+        // 对照：逐条匹配全部商铺，相当于 like '%name%' 在内存中执行
+        for (int i = 0; i < QUERIES / 10; i++) {
+            long begin = System.nanoTime();
+            scan(docs, queries.get(i), 0, PAGE_SIZE);
+            latencies[i] = System.nanoTime() - begin;
+        }
+        report("逐条匹配", Arrays.copyOf(latencies, QUERIES / 10));
+        index.shutdown();
+    }
+
+    private static void report(String name, long[] latencies) {
+        long total = Arrays.stream(latencies).sum();
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        log.info(String.format("[%s] %d次查询，%.0f次/秒，p50 %.1fus，p99 %.1fus", name, sorted.length,
+                sorted.length * 1e9 / total, sorted[sorted.length / 2] / 1e3, sorted[sorted.length * 99 / 100] / 1e3));
+    }
+}
@@ -0,0 +1,138 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClassName: ShopNameIndexTest
+ * Package: com.hmdp.utils
+ * Description: 名称倒排索引的搜索结果与逐条匹配的结果对比，以及增量修改与后台合并
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 11:30
+ * @Version 1.0
+ */
+public class ShopNameIndexTest {
+
+    static final int PAGE_SIZE = 10;
+    private static final String[] PREFIXES = {"老", "小", "阿", "大", "新", "好", "金", "王记", "张姐", "李家", "Happy", "星巴"};
+    private static final String[] WORDS = {"茶餐厅", "火锅", "烧烤", "咖啡", "KTV", "面馆", "饺子馆", "甜品", "奶茶", "酒吧",
+            "私房菜", "烤肉", "小笼包", "牛排", "麻辣烫", "寿司", "披萨", "生煎", "酸菜鱼", "海鲜"};
+    private static final String[] AREAS = {"陆家嘴", "五角场", "徐家汇", "静安寺", "大关", "西湖", "拱宸桥", "运河上街", "人民广场", "南京路"};
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void matchesScan() {
+        Map<Long, String[]> docs = randomDocs(random, 5_000);
+        ShopNameIndex index = newIndex(docs, 1_000_000);
+        for (String query : queries(random, docs, 300)) {
+            assertEquals(query, scan(docs, query, 0, PAGE_SIZE), index.search(query, 0, PAGE_SIZE));
+            assertEquals(query, scan(docs, query, 20, PAGE_SIZE), index.search(query, 20, PAGE_SIZE));
+        }
+        // 忽略大小写、全角和空白
+        assertEquals(scan(docs, "ktv", 0, PAGE_SIZE), index.search(" ＫＴＶ ", 0, PAGE_SIZE));
+        assertTrue(index.search("不存在的店", 0, PAGE_SIZE).isEmpty());
+        assertTrue(index.search("   ", 0, PAGE_SIZE).isEmpty());
+    }
+
+    @Test
+    public void incrementalUpdatesAndMerge() throws InterruptedException {
+        Map<Long, String[]> docs = randomDocs(random, 2_000);
+        ShopNameIndex index = newIndex(docs, 100);
+        for (int i = 0; i < 250; i++) {
+            long id = i % 3 == 0 ? 10_000 + i : 1 + random.nextInt(2_000);
+            String[] doc = randomDoc(random);
+            docs.put(id, doc);
+            index.onMessage(new Shop().setId(id).setName(doc[0]).setArea(doc[1]));
+            if (i % 50 == 0) {
+                for (String query : queries(random, docs, 20)) {
+                    assertEquals(query, scan(docs, query, 0, PAGE_SIZE), index.search(query, 0, PAGE_SIZE));
+                }
+            }
+        }
+        // 删除
+        docs.remove(10_000L);
+        index.onMessage(new Shop().setId(10_000L));
+        // 等待后台合并完成
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((int) index.stats().get("deltaDocs") >= 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue((int) index.stats().get("deltaDocs") < 100);
+        assertEquals(docs.size(), index.stats().get("docs"));
+        for (String query : queries(random, docs, 200)) {
+            assertEquals(query, scan(docs, query, 0, PAGE_SIZE), index.search(query, 0, PAGE_SIZE));
+        }
+        index.shutdown();
+    }
+
+    static ShopNameIndex newIndex(Map<Long, String[]> docs, int mergeThreshold) {
+        ShopNameIndex index = new ShopNameIndex(null, null, new CacheMetrics(new SimpleMeterRegistry()), true, 1000, mergeThreshold);
+        ShopNameIndex.Docs input = new ShopNameIndex.Docs(docs.size());
+        docs.forEach((id, doc) -> input.add(id, ShopNameIndex.normalize(doc[0]), ShopNameIndex.normalize(doc[1])));
+        index.install(ShopNameIndex.Segment.build(input));
+        return index;
+    }
+
+    static Map<Long, String[]> randomDocs(Random random, int shops) {
+        Map<Long, String[]> docs = new TreeMap<>();
+        for (long id = 1; id <= shops; id++) {
+            docs.put(id, randomDoc(random));
+        }
+        return docs;
+    }
+
+    static String[] randomDoc(Random random) {
+        String name = pick(random, PREFIXES) + pick(random, WORDS) + (random.nextBoolean() ? "(" + pick(random, AREAS) + "店)" : "");
+        return new String[]{name, pick(random, AREAS)};
+    }
+
+    // 随机取商铺名称或商圈的子串，包含前缀、单字和较长的子串
+    static List<String> queries(Random random, Map<Long, String[]> docs, int count) {
+        List<String[]> values = new ArrayList<>(docs.values());
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] doc = values.get(random.nextInt(values.size()));
+            String text = doc[random.nextInt(4) == 0 ? 1 : 0];
+            int from = random.nextInt(3) == 0 ? 0 : random.nextInt(text.length());
+            int to = Math.min(text.length(), from + 1 + random.nextInt(4));
+            queries.add(text.substring(from, to));
+        }
+        return queries;
+    }
+
+    static List<Long> scan(Map<Long, String[]> docs, String keyword, int from, int size) {
+        String query = ShopNameIndex.normalize(keyword);
+        List<long[]> matches = new ArrayList<>();
+        docs.forEach((id, doc) -> {
+            String name = ShopNameIndex.normalize(doc[0]);
+            String area = ShopNameIndex.normalize(doc[1]);
+            int rank = name.startsWith(query) ? 0 : name.contains(query) ? 1 : area.contains(query) ? 2 : -1;
+            if (rank >= 0) {
+                matches.add(new long[]{rank, id});
+            }
+        });
+        return matches.stream()
+                .sorted(Comparator.<long[]>comparingLong(m -> m[0]).thenComparingLong(m -> m[1]))
+                .skip(from).limit(size)
+                .map(m -> m[1])
+                .collect(Collectors.toList());
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
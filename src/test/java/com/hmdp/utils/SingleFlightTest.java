@@ -0,0 +1,118 @@
+package com.hmdp.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ClassName: SingleFlightTest
+ * Package: com.hmdp.utils
+ * Description: 同一key的并发加载只执行一次并共享结果，异常同样传给等待的线程，加载结束后下一次请求重新加载
+ *
+ * @Author 梁允勇
+ * @Create 2026/10/19 10:00
+ * @Version 1.0
+ */
+public class SingleFlightTest {
+
+    private static final int THREADS = 16;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Test
+    public void coalescesConcurrentLoads() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object value = new Object();
+        List<Future<Object>> results = runConcurrently(() -> singleFlight.execute("shop:1", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return value;
+        }), release);
+        for (Future<Object> result : results) {
+            assertSame(value, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        // 加载结束后不再合并，下一次请求重新加载
+        assertSame(value, singleFlight.execute("shop:1", () -> {
+            loads.incrementAndGet();
+            return value;
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void sharesFailure() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Object>> results = runConcurrently(() -> singleFlight.execute("shop:2", () -> {
+            loads.incrementAndGet();
+            await(release);
+            throw new IllegalStateException("db down");
+        }), release);
+        for (Future<Object> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("等待的线程也应收到加载异常");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void differentKeysLoadIndependently() {
+        AtomicInteger loads = new AtomicInteger();
+        singleFlight.execute("shop:3", loads::incrementAndGet);
+        singleFlight.execute("shop:4", loads::incrementAndGet);
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * 所有线程都进入execute后才放行加载，保证它们确实并发
+     */
+    private List<Future<Object>> runConcurrently(Callable<Object> call, CountDownLatch release)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch started = new CountDownLatch(THREADS);
+        List<Future<Object>> results = new ArrayList<>(THREADS);
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                results.add(pool.submit(() -> {
+                    started.countDown();
+                    return call.call();
+                }));
+            }
+            started.await(5, TimeUnit.SECONDS);
+            // 给最后进入的线程留出调用putIfAbsent的时间
+            Thread.sleep(100);
+            release.countDown();
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+-- 压测用的商铺
+INSERT INTO `tb_shop` (`name`, `type_id`, `images`, `area`, `address`, `x`, `y`, `avg_price`, `sold`, `comments`, `score`, `open_hours`)
+SELECT CONCAT('压测商铺', X), MOD(X, 10) + 1, '', '压测商圈', CONCAT('压测路', X, '号'), 120.149 + X / 10000.0, 30.319 + X / 10000.0, 80, 0, 0, 40, '10:00-22:00'
+FROM SYSTEM_RANGE(1, 1000);
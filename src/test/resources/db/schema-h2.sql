@@ -0,0 +1,81 @@
+-- 压测用的表结构，与hmdp.sql一致，去掉了H2不支持的MySQL表选项
+CREATE TABLE `tb_user` (
+  `id` bigint UNSIGNED NOT NULL AUTO_INCREMENT,
+  `phone` varchar(11) NOT NULL,
+  `password` varchar(128) NULL DEFAULT '',
+  `nick_name` varchar(32) NULL DEFAULT '',
+  `icon` varchar(255) NULL DEFAULT '',
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uniqe_key_phone` (`phone`)
+);
+
+CREATE TABLE `tb_shop` (
+  `id` bigint UNSIGNED NOT NULL AUTO_INCREMENT,
+  `name` varchar(128) NOT NULL,
+  `type_id` bigint UNSIGNED NOT NULL,
+  `images` varchar(1024) NOT NULL,
+  `area` varchar(128) NULL DEFAULT NULL,
+  `address` varchar(255) NOT NULL,
+  `x` double NOT NULL,
+  `y` double NOT NULL,
+  `avg_price` bigint NULL DEFAULT NULL,
+  `sold` int NOT NULL,
+  `comments` int NOT NULL,
+  `score` int NOT NULL,
+  `open_hours` varchar(32) NULL DEFAULT NULL,
+  `create_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+
+CREATE TABLE `tb_voucher` (
+  `id` bigint UNSIGNED NOT NULL AUTO_INCREMENT,
+  `shop_id` bigint UNSIGNED NULL DEFAULT NULL,
+  `title` varchar(255) NOT NULL,
+  `sub_title` varchar(255) NULL DEFAULT NULL,
+  `rules` varchar(1024) NULL DEFAULT NULL,
+  `pay_value` bigint UNSIGNED NOT NULL,
+  `actual_value` bigint NOT NULL,
+  `type` tinyint UNSIGNED NOT NULL DEFAULT 0,
+  `status` tinyint UNSIGNED NOT NULL DEFAULT 1,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+
+CREATE TABLE `tb_seckill_voucher` (
+  `voucher_id` bigint UNSIGNED NOT NULL,
+  `stock` int NOT NULL,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `begin_time` timestamp NOT NULL,
+  `end_time` timestamp NOT NULL,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`voucher_id`)
+);
+
+CREATE TABLE `tb_voucher_order` (
+  `id` bigint NOT NULL,
+  `user_id` bigint UNSIGNED NOT NULL,
+  `voucher_id` bigint UNSIGNED NOT NULL,
+  `pay_type` tinyint UNSIGNED NOT NULL DEFAULT 1,
+  `status` tinyint UNSIGNED NOT NULL DEFAULT 1,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `pay_time` timestamp NULL DEFAULT NULL,
+  `use_time` timestamp NULL DEFAULT NULL,
+  `refund_time` timestamp NULL DEFAULT NULL,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+
+CREATE TABLE `tb_cache_outbox` (
+  `id` bigint UNSIGNED NOT NULL AUTO_INCREMENT,
+  `cache_key` varchar(255) NOT NULL,
+  `stage` tinyint UNSIGNED NOT NULL DEFAULT 1,
+  `retries` int UNSIGNED NOT NULL DEFAULT 0,
+  `next_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+CREATE INDEX `idx_next_time` ON `tb_cache_outbox` (`next_time`);